@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the falloff costs a whole map now that it is looked up per tile: once from the cache (what regenerating a map
+ * pays) and once for every tile of the map (what making the tiles pays on top of the noise).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FalloffMapBenchmark {
+
+    @Param({"500", "2000"})
+    int size;
+
+    Object falloff;
+
+    @Setup
+    public void setup() throws Throwable {
+        falloff = (Object) Game.GET_FALLOFF.invokeExact(size);
+    }
+
+    @Benchmark
+    public Object get() throws Throwable {
+        return (Object) Game.GET_FALLOFF.invokeExact(size);
+    }
+
+    @Benchmark
+    public double sampleEveryTile() throws Throwable {
+        double sum = 0;
+        for (int y = 0; y < size; y++){
+            for (int x = 0; x < size; x++){
+                sum += (double) Game.FALLOFF_AT.invokeExact(falloff, x, y);
+            }
+        }
+        return sum;
+    }
+}
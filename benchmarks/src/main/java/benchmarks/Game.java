@@ -0,0 +1,118 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Handles to the game classes. The game lives in the default package, which Java code in a named package can't
+ * reference directly, and JMH refuses benchmarks in the default package. The handles are static final, so C2 treats
+ * them as constants and inlines straight through them. Game classes in their types are turned into Object, so the
+ * benchmarks can hold game objects as Object and call every handle with invokeExact, which boxes nothing.
+ */
+final class Game {
+    static final Class<?> OPEN_SIMPLEX_2 = load("OpenSimplex2");
+    static final Class<?> MAP_GENERATOR = load("MapGenerator");
+    static final Class<?> FALLOFF_MAP_GENERATOR = load("FalloffMapGenerator");
+    static final Class<?> POISSON_DISK_GENERATOR = load("PoissonDiskGenerator");
+    static final Class<?> GAME_PANEL = load("GamePanel");
+    static final Class<?> CHUNK_MANAGER = load("ChunkManager");
+    static final Class<?> FLOAT_GRID = load("FloatGrid");
+    static final Class<?> CHUNK = load("Chunk");
+    static final Class<?> REGION_FILE = load("RegionFile");
+
+    static final MethodHandle NOISE2 = findStatic(OPEN_SIMPLEX_2, "noise2", float.class, long.class, double.class, double.class);
+    static final MethodHandle NOISE2_ROW = findStatic(OPEN_SIMPLEX_2, "noise2Row", void.class, long.class, double.class, double.class, double.class, float[].class, int.class, int.class);
+    static final MethodHandle NOISE3_IMPROVE_XY = findStatic(OPEN_SIMPLEX_2, "noise3_ImproveXY", float.class, long.class, double.class, double.class, double.class);
+    static final MethodHandle NOISE4_IMPROVE_XYZ_IMPROVE_XY = findStatic(OPEN_SIMPLEX_2, "noise4_ImproveXYZ_ImproveXY", float.class, long.class, double.class, double.class, double.class, double.class);
+    static final MethodHandle NOISE4_IMPROVE_XYZ = findStatic(OPEN_SIMPLEX_2, "noise4_ImproveXYZ", float.class, long.class, double.class, double.class, double.class, double.class);
+    static final MethodHandle NOISE4_IMPROVE_XY_IMPROVE_ZW = findStatic(OPEN_SIMPLEX_2, "noise4_ImproveXY_ImproveZW", float.class, long.class, double.class, double.class, double.class, double.class);
+    static final MethodHandle NOISE4_FALLBACK = findStatic(OPEN_SIMPLEX_2, "noise4_Fallback", float.class, long.class, double.class, double.class, double.class, double.class);
+
+    static final MethodHandle NEW_MAP_GENERATOR = findConstructor(MAP_GENERATOR, int.class, int.class);
+    static final MethodHandle NEW_CHUNK_MAP_GENERATOR = findConstructor(MAP_GENERATOR, int.class, int.class, boolean.class);
+    static final MethodHandle GENERATE_CHUNK = findVirtual(MAP_GENERATOR, "generateChunk", CHUNK, int.class, int.class);
+    static final MethodHandle ENCODE_CHUNK = findStatic(REGION_FILE, "encode", byte[].class, CHUNK);
+    static final MethodHandle DECODE_CHUNK = findStatic(REGION_FILE, "decode", CHUNK, int.class, int.class, byte[].class);
+    static final MethodHandle GENERATE_MAP = findVirtual(MAP_GENERATOR, "generateMap", void.class, int.class, int.class);
+    static final MethodHandle GET_FALLOFF = findStatic(FALLOFF_MAP_GENERATOR, "get", FALLOFF_MAP_GENERATOR, int.class);
+    static final MethodHandle FALLOFF_AT = findVirtual(FALLOFF_MAP_GENERATOR, "falloffAt", double.class, int.class, int.class);
+    static final MethodHandle NEW_POISSON_DISK_GENERATOR = findConstructor(POISSON_DISK_GENERATOR, double.class, int.class, int.class);
+
+    private Game(){
+    }
+
+    private static Class<?> load(String name){
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e){
+            throw new IllegalStateException("game class " + name + " is missing from the benchmark jar", e);
+        }
+    }
+
+    private static MethodHandle findStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters){
+        try {
+            return withObjects(MethodHandles.lookup().findStatic(owner, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e){
+            throw new IllegalStateException(owner.getName() + "." + name + " changed, update the benchmarks", e);
+        }
+    }
+
+    private static MethodHandle findVirtual(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters){
+        try {
+            return withObjects(MethodHandles.lookup().findVirtual(owner, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e){
+            throw new IllegalStateException(owner.getName() + "." + name + " changed, update the benchmarks", e);
+        }
+    }
+
+    private static MethodHandle findConstructor(Class<?> owner, Class<?>... parameters){
+        try {
+            return withObjects(MethodHandles.lookup().findConstructor(owner, MethodType.methodType(void.class, parameters)));
+        } catch (ReflectiveOperationException e){
+            throw new IllegalStateException(owner.getName() + " constructor changed, update the benchmarks", e);
+        }
+    }
+
+    // the handle with every game class in its type, the receiver included, as Object
+    private static MethodHandle withObjects(MethodHandle handle){
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++){
+            if (isGameClass(type.parameterType(i))){
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isGameClass(type.returnType())){
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean isGameClass(Class<?> type){
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+    // reads or writes a package private field of a game object
+    static Object get(Object target, String name){
+        try {
+            return field(target.getClass(), name).get(target);
+        } catch (ReflectiveOperationException e){
+            throw new IllegalStateException(target.getClass().getName() + "." + name + " changed, update the benchmarks", e);
+        }
+    }
+
+    static void set(Object target, String name, Object value){
+        try {
+            field(target.getClass(), name).set(target, value);
+        } catch (ReflectiveOperationException e){
+            throw new IllegalStateException(target.getClass().getName() + "." + name + " changed, update the benchmarks", e);
+        }
+    }
+
+    private static Field field(Class<?> owner, String name) throws NoSuchFieldException {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Thread)
+public class MapGeneratorBenchmark {
+
+    @Param({"250", "500", "1000", "2000"})
+    int mapSize;
+
+    @Param({"6", "18"})
+    int octaves;
+
+    Object mapGenerator;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        mapGenerator = (Object) Game.NEW_MAP_GENERATOR.invokeExact(42, mapSize);
+        Game.set(mapGenerator, "octaves", octaves);
+        Game.GENERATE_MAP.invokeExact(mapGenerator, 0, 0); // builds the tree points, those are reused after this
+    }
+
+    @Benchmark
+    public Object generateMap() throws Throwable {
+        Game.GENERATE_MAP.invokeExact(mapGenerator, 0, 0);
+        return mapGenerator;
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NoiseBenchmark {
+    static final int ROW = 2000;
+
+    long seed = 42;
+    double x = 1234.56;
+    double y = -789.01;
+    double z = 0.25;
+    double w = 17.5;
+    float[] row = new float[ROW];
+
+    @Benchmark
+    public float noise2() throws Throwable {
+        return (float) Game.NOISE2.invokeExact(seed, x, y);
+    }
+
+    // a whole map row, compare against noise2 * ROW
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public float[] noise2Row() throws Throwable {
+        Game.NOISE2_ROW.invokeExact(seed, x, 0.002, y, row, 0, ROW);
+        return row;
+    }
+
+    @Benchmark
+    public float noise3_ImproveXY() throws Throwable {
+        return (float) Game.NOISE3_IMPROVE_XY.invokeExact(seed, x, y, z);
+    }
+
+    @Benchmark
+    public float noise4_ImproveXYZ_ImproveXY() throws Throwable {
+        return (float) Game.NOISE4_IMPROVE_XYZ_IMPROVE_XY.invokeExact(seed, x, y, z, w);
+    }
+
+    @Benchmark
+    public float noise4_ImproveXYZ() throws Throwable {
+        return (float) Game.NOISE4_IMPROVE_XYZ.invokeExact(seed, x, y, z, w);
+    }
+
+    @Benchmark
+    public float noise4_ImproveXY_ImproveZW() throws Throwable {
+        return (float) Game.NOISE4_IMPROVE_XY_IMPROVE_ZW.invokeExact(seed, x, y, z, w);
+    }
+
+    @Benchmark
+    public float noise4_Fallback() throws Throwable {
+        return (float) Game.NOISE4_FALLBACK.invokeExact(seed, x, y, z, w);
+    }
+}
@@ -0,0 +1,25 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Thread)
+public class PoissonDiskBenchmark {
+
+    @Param({"3", "5", "10"})
+    double minDistance;
+
+    @Param({"500", "1950"})
+    int size;
+
+    @Benchmark
+    public Object construct() throws Throwable {
+        return (Object) Game.NEW_POISSON_DISK_GENERATOR.invokeExact(minDistance, size, 42);
+    }
+}
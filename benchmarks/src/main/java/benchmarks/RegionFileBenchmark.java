@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding one chunk of a region file, over the 8 x 8 chunks around the origin of seed 42 so the score
+ * mixes ocean, land and mountains. The compression ratio against the chunk as raw floats and bytes is printed once
+ * at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegionFileBenchmark {
+    static final int CHUNKS = 8; // per side
+    static final int SIZE = 64; // Chunk.SIZE
+
+    Object[] chunks;
+    byte[][] encoded;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        Object generator = (Object) Game.NEW_CHUNK_MAP_GENERATOR.invokeExact(42, 2000, false);
+
+        chunks = new Object[CHUNKS * CHUNKS];
+        encoded = new byte[CHUNKS * CHUNKS][];
+        long compressed = 0;
+        for (int i = 0; i < chunks.length; i++){
+            chunks[i] = (Object) Game.GENERATE_CHUNK.invokeExact(generator, i % CHUNKS - CHUNKS / 2, i / CHUNKS - CHUNKS / 2);
+            encoded[i] = (byte[]) Game.ENCODE_CHUNK.invokeExact(chunks[i]);
+            compressed += encoded[i].length;
+        }
+
+        long raw = (long) chunks.length * SIZE * SIZE * (Float.BYTES * 2 + 1); // heights, moistures and tile ids
+        System.out.printf("%nregion file: %d bytes per chunk, %.2fx smaller than raw floats, %.2fx smaller than doubles%n",
+                compressed / chunks.length, raw / (double) compressed, raw * (17 / 9d) / compressed);
+    }
+
+    @Benchmark
+    public Object encode() throws Throwable {
+        next = (next + 1) % chunks.length;
+        return (byte[]) Game.ENCODE_CHUNK.invokeExact(chunks[next]);
+    }
+
+    @Benchmark
+    public Object decode() throws Throwable {
+        next = (next + 1) % chunks.length;
+        return (Object) Game.DECODE_CHUNK.invokeExact(0, 0, encoded[next]);
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paints one frame of the game onto an offscreen image, the camera a tile further along every frame like while
+ * walking, so each paint moves the last frame and copies in the tiles that came into view. Run headless, the chunks
+ * under the whole walk are generated before measuring so only the paint is timed. The game is started with a save
+ * file in an empty temporary directory, so a world.dat in the working directory doesn't change what is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+    static final int SIZE = 500;
+    static final int WALK = 64; // tiles the camera goes right and down before turning back
+
+    Path saveDirectory;
+    Component gamePanel;
+    Field cameraX;
+    Field cameraY;
+    int startX;
+    int startY;
+    int step;
+    BufferedImage image;
+    Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        saveDirectory = Files.createTempDirectory("render-benchmark");
+        Constructor<?> constructor = Game.GAME_PANEL.getDeclaredConstructor(Color.class, int.class, Path.class);
+        constructor.setAccessible(true);
+        gamePanel = (Component) constructor.newInstance(Color.BLACK, SIZE, saveDirectory.resolve("world.dat"));
+        gamePanel.setSize(SIZE, SIZE);
+
+        cameraX = Game.GAME_PANEL.getDeclaredField("cameraX");
+        cameraY = Game.GAME_PANEL.getDeclaredField("cameraY");
+        cameraX.setAccessible(true);
+        cameraY.setAccessible(true);
+
+        Object world = Game.get(gamePanel, "world");
+        startX = (int) Game.get(gamePanel, "offsetX");
+        startY = (int) Game.get(gamePanel, "offsetY");
+        int viewSize = (int) Game.get(gamePanel, "visableMapSize") + WALK;
+
+        Game.CHUNK_MANAGER.getMethod("prefetch", int.class, int.class, int.class, int.class, int.class).invoke(world, startX, startY, viewSize, 0, 0);
+        while (!(boolean) Game.CHUNK_MANAGER.getMethod("isLoaded", int.class, int.class, int.class).invoke(world, startX, startY, viewSize)){
+            Thread.sleep(10);
+        }
+
+        image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics(); // paint leaves the graphics it is given to whoever made them
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        graphics.dispose();
+        Files.deleteIfExists(saveDirectory);
+    }
+
+    @Benchmark
+    public BufferedImage paintMap() throws IllegalAccessException {
+        step = (step + 1) % (2 * WALK);
+        int along = step < WALK ? step : 2 * WALK - step;
+        cameraX.setDouble(gamePanel, startX + along);
+        cameraY.setDouble(gamePanel, startY + along);
+
+        gamePanel.paint(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * What TerrainBaker made of a chunk. Everything in it is made together and swapped into the chunk with one write, so
+ * the render thread never sees the layers of one bake with the neighbours or stamp of another.
+ */
+public class BakedChunk {
+    final int[][] layers; // the ARGB color of every tile for each tide level
+    final int neighbours; // which of the 3 x 3 chunks around it (row major, bit 4 is the chunk itself) were loaded
+    final long stamp; // bakes that saw a newer set of neighbours have a higher stamp
+
+    public BakedChunk(int[][] layers, int neighbours, long stamp){
+        this.layers = layers;
+        this.neighbours = neighbours;
+        this.stamp = stamp;
+    }
+}
@@ -0,0 +1,233 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates the worlds of a range of seeds without opening a window, for building and looking through worlds in bulk:
+ *
+ *   java -jar 2d-red-dead.jar batch --seeds 0..99 --size 2000 --out worlds --format png,world --threads 4
+ *
+ * Every seed is a mapSize x mapSize island made of the same chunks the game would generate, written as soon as it
+ * is done: png is one pixel per tile, world is a WorldFile the game can open, region is a folder of RegionFiles.
+ * A fixed pool of threads works on one seed each, so at most that many worlds are in memory at once.
+ * At the end it prints seeds per second and the peak heap, to size batch machines by.
+ */
+public class BatchGenerator {
+    int firstSeed;
+    int lastSeed;
+    int mapSize = 2000;
+    Path out = Path.of("worlds");
+    boolean png = true;
+    boolean world;
+    boolean region;
+    boolean falloff = true; // false for a piece of the endless world instead of an island
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    static final int HEAP_SAMPLE_MILLIS = 20;
+    volatile long peakHeapBytes; // only the sampler writes it, and run() once it has stopped
+
+    public static void main(String[] args){
+        BatchGenerator batch = new BatchGenerator();
+        try {
+            batch.parse(args);
+        } catch (IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println("usage: batch --seeds <first>..<last> [--size 2000] [--out worlds] [--format png,world,region] [--threads n] [--no-falloff]");
+            System.exit(2);
+        }
+
+        try {
+            batch.run();
+        } catch (IOException | InterruptedException e){
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args){
+        boolean seeds = false;
+        for (int i = 0; i < args.length; i++){
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]){
+                case "--seeds":
+                    String[] range = require(args[i], value).split("\\.\\.");
+                    try {
+                        firstSeed = Integer.parseInt(range[0]);
+                        lastSeed = Integer.parseInt(range.length > 1 ? range[1] : range[0]);
+                    } catch (NumberFormatException e){
+                        throw new IllegalArgumentException("--seeds takes <first>..<last>, got " + value);
+                    }
+                    seeds = true;
+                    i++;
+                    break;
+                case "--size":
+                    mapSize = number(args[i], value);
+                    i++;
+                    break;
+                case "--out":
+                    out = Path.of(require(args[i], value));
+                    i++;
+                    break;
+                case "--format":
+                    png = world = region = false;
+                    for (String format : require(args[i], value).split(",")){
+                        switch (format){
+                            case "png": png = true; break;
+                            case "world": world = true; break;
+                            case "region": region = true; break;
+                            default: throw new IllegalArgumentException("unknown format " + format);
+                        }
+                    }
+                    i++;
+                    break;
+                case "--threads":
+                    threads = number(args[i], value);
+                    i++;
+                    break;
+                case "--no-falloff":
+                    falloff = false;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        if (!seeds){
+            throw new IllegalArgumentException("--seeds is required");
+        }
+        if (lastSeed < firstSeed || mapSize <= 0 || threads <= 0){
+            throw new IllegalArgumentException("the seed range, size and threads have to be positive");
+        }
+    }
+
+    private static String require(String option, String value){
+        if (value == null){
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return value;
+    }
+
+    private static int number(String option, String value){
+        try {
+            return Integer.parseInt(require(option, value));
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException(option + " takes a number, got " + value);
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Files.createDirectories(out);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<String> done = new ExecutorCompletionService<>(pool);
+
+        // the heap in use, looked at every few milliseconds, since the pools' own peaks don't happen at the same time
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sampleHeap, 0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        // longs, since a range of ints can have more seeds than an int holds and lastSeed can be Integer.MAX_VALUE.
+        // Only a few seeds are queued ahead of the threads so a huge range doesn't fill the queue
+        long total = (long) lastSeed - firstSeed + 1;
+        long next = firstSeed;
+        for (int i = 0; i < 2 * threads && next <= lastSeed; i++, next++){
+            int seed = (int) next;
+            done.submit(() -> generate(seed));
+        }
+
+        long start = System.nanoTime();
+        long failed = 0;
+        for (long finished = 1; finished <= total; finished++){
+            try {
+                String result = done.take().get();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf(Locale.ROOT, "[%d/%d] %s (%.2f seeds/s)%n", finished, total, result, finished / seconds);
+            } catch (ExecutionException e){
+                failed++;
+                e.getCause().printStackTrace();
+            }
+
+            if (next <= lastSeed){
+                int seed = (int) next++;
+                done.submit(() -> generate(seed));
+            }
+        }
+        pool.shutdown();
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+        sampleHeap();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "%d seeds (%d failed) of %d x %d on %d threads in %.1f s: %.2f seeds/s, peak heap in use %d MB (sampled every %d ms)%n",
+                total, failed, mapSize, mapSize, threads, seconds, total / seconds, peakHeapBytes / (1024 * 1024), HEAP_SAMPLE_MILLIS);
+    }
+
+    // generates one seed and writes it out, returns what was written
+    private String generate(int seed) throws IOException {
+        MapGenerator generator = new MapGenerator(seed, mapSize, falloff);
+        int chunks = (mapSize + Chunk.SIZE - 1) / Chunk.SIZE;
+
+        BufferedImage image = png ? new BufferedImage(mapSize, mapSize, BufferedImage.TYPE_INT_RGB) : null;
+        int[] pixels = png ? ((DataBufferInt) image.getRaster().getDataBuffer()).getData() : null;
+        List<Chunk> kept = world || region ? new ArrayList<>(chunks * chunks) : null; // only png lets chunks go as soon as they are drawn
+
+        for (int chunkY = 0; chunkY < chunks; chunkY++){
+            for (int chunkX = 0; chunkX < chunks; chunkX++){
+                Chunk chunk = generator.generateChunk(chunkX, chunkY);
+
+                if (png){
+                    int width = Math.min(Chunk.SIZE, mapSize - chunkX * Chunk.SIZE);
+                    int height = Math.min(Chunk.SIZE, mapSize - chunkY * Chunk.SIZE);
+                    for (int y = 0; y < height; y++){
+                        int row = (chunkY * Chunk.SIZE + y) * mapSize + chunkX * Chunk.SIZE;
+                        for (int x = 0; x < width; x++){
+                            pixels[row + x] = Tiles.argb(chunk.getTile(x, y));
+                        }
+                    }
+                }
+                if (kept != null){
+                    kept.add(chunk);
+                }
+            }
+        }
+
+        List<String> written = new ArrayList<>();
+        if (png){
+            Path path = out.resolve("seed-" + seed + ".png");
+            ImageIO.write(image, "png", path.toFile());
+            written.add(path.toString());
+        }
+        if (world){
+            Path path = out.resolve("seed-" + seed + ".dat");
+            WorldFile.save(path, generator, kept);
+            written.add(path.toString());
+        }
+        if (region){
+            Path path = out.resolve("seed-" + seed);
+            RegionFile.save(path, kept);
+            written.add(path + "/");
+        }
+        return "seed " + seed + " -> " + String.join(", ", written);
+    }
+
+    private void sampleHeap(){
+        peakHeapBytes = Math.max(peakHeapBytes, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which biome a height and moisture make, read from a rules file (biomes.txt next to the classes by default) and
+ * compiled into a RESOLUTION x RESOLUTION grid of biome ids, so classifying a tile is one array lookup.
+ * A grid cell that a rule's threshold runs through is marked and falls back to the rules, so the grid always gives
+ * exactly what the rules say.
+ */
+public class BiomeTable {
+    static final int RESOLUTION = 1024; // grid cells per axis, a power of two so the cell edges are exact doubles
+    static final byte MIXED = -1; // a cell with more than one biome in it
+
+    private static BiomeTable defaultTable;
+
+    // the rules, in the order they are checked
+    final byte[] biomes;
+    final double[] maxHeights;
+    final double[] maxMoistures;
+
+    final byte[] grid; // [heightCell * RESOLUTION + moistureCell]
+
+    public BiomeTable(byte[] biomes, double[] maxHeights, double[] maxMoistures){
+        this.biomes = biomes;
+        this.maxHeights = maxHeights;
+        this.maxMoistures = maxMoistures;
+
+        grid = new byte[RESOLUTION * RESOLUTION];
+        for (int h = 0; h < RESOLUTION; h++){
+            for (int m = 0; m < RESOLUTION; m++){
+                grid[h * RESOLUTION + m] = compileCell(h / (double) RESOLUTION, (h + 1) / (double) RESOLUTION, m / (double) RESOLUTION, (m + 1) / (double) RESOLUTION);
+            }
+        }
+    }
+
+    /**
+     * The table from the file named by -Dbiomes if set, otherwise the biomes.txt that ships with the game.
+     * Loaded once and shared.
+     */
+    public static synchronized BiomeTable getDefault(){
+        if (defaultTable == null){
+            try {
+                String path = System.getProperty("biomes");
+                if (path != null){
+                    defaultTable = load(Path.of(path));
+                } else {
+                    InputStream in = BiomeTable.class.getResourceAsStream("/biomes.txt");
+                    if (in == null){
+                        throw new IllegalStateException("biomes.txt is missing from the classpath");
+                    }
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))){
+                        defaultTable = parse(reader, "biomes.txt");
+                    }
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+        return defaultTable;
+    }
+
+    public static BiomeTable load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)){
+            return parse(reader, file.toString());
+        }
+    }
+
+    // lines are "<Tiles name> <max height> <max moisture>", blank lines and everything after a # are ignored
+    public static BiomeTable parse(BufferedReader reader, String source) throws IOException {
+        List<String[]> rules = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null){
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment != -1){
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()){
+                continue;
+            }
+
+            String[] parts = line.split("\\s+");
+            if (parts.length != 3){
+                throw new IOException(source + ":" + lineNumber + ": expected <biome> <max height> <max moisture>, got \"" + line + "\"");
+            }
+            rules.add(parts);
+        }
+        if (rules.isEmpty()){
+            throw new IOException(source + " has no biome rules");
+        }
+
+        byte[] biomes = new byte[rules.size()];
+        double[] maxHeights = new double[rules.size()];
+        double[] maxMoistures = new double[rules.size()];
+        for (int i = 0; i < rules.size(); i++){
+            String[] rule = rules.get(i);
+            try {
+                biomes[i] = Tiles.class.getField(rule[0]).getByte(null);
+                maxHeights[i] = Double.parseDouble(rule[1]);
+                maxMoistures[i] = Double.parseDouble(rule[2]);
+            } catch (NoSuchFieldException | IllegalAccessException e){
+                throw new IOException(source + ": " + rule[0] + " isn't a tile in Tiles", e);
+            } catch (NumberFormatException e){
+                throw new IOException(source + ": bad number in the rule for " + rule[0], e);
+            }
+        }
+
+        return new BiomeTable(biomes, maxHeights, maxMoistures);
+    }
+
+    // the biome of a tile, height and moisture are from 0 to 1
+    public byte classify(double height, double moisture){
+        if (height >= 0 && height <= 1 && moisture >= 0 && moisture <= 1){
+            byte biome = grid[Math.min((int) (height * RESOLUTION), RESOLUTION - 1) * RESOLUTION + Math.min((int) (moisture * RESOLUTION), RESOLUTION - 1)];
+            if (biome != MIXED){
+                return biome;
+            }
+        }
+        return evaluate(height, moisture);
+    }
+
+    // goes through the rules one by one, what the grid is built from
+    public byte evaluate(double height, double moisture){
+        for (int i = 0; i < biomes.length; i++){
+            if (height <= maxHeights[i] && moisture <= maxMoistures[i]){
+                return biomes[i];
+            }
+        }
+        return biomes[biomes.length - 1]; // past every rule, only happens for values over 1
+    }
+
+    // the biome of every point in the box, or MIXED if they don't all get the same one
+    private byte compileCell(double minHeight, double maxHeight, double minMoisture, double maxMoisture){
+        for (int i = 0; i < biomes.length; i++){
+            boolean all = maxHeight <= maxHeights[i] && maxMoisture <= maxMoistures[i];
+            boolean none = minHeight > maxHeights[i] || minMoisture > maxMoistures[i];
+            if (all){
+                return biomes[i];
+            } else if (!none){
+                return MIXED;
+            }
+        }
+        return biomes[biomes.length - 1];
+    }
+}
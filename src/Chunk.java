@@ -0,0 +1,70 @@
+import java.awt.*;
+import java.util.Arrays;
+
+public class Chunk {
+    public static final int SIZE = 64; // width and height of a chunk in tiles
+
+    final int chunkX;
+    final int chunkY;
+    // ChunkManager.save swaps these for heap copies while other threads read them, the copies hold the same values
+    volatile FloatGrid heightMap;
+    volatile FloatGrid moistureMap;
+    volatile byte[] tiles; // one Tiles id per tile, row major. Never changed once published, replaced with a changed copy instead
+    TreeIndex trees; // in chunk coordinates, filled when the chunk is generated
+    volatile BakedChunk baked; // the colors, null until TerrainBaker has been over it
+    long cachedBytes; // what the ChunkManager counts it as while it is in the cache, 0 once it isn't
+
+    public Chunk(int chunkX, int chunkY){
+        this(chunkX, chunkY, new FloatGrid(SIZE, SIZE), new FloatGrid(SIZE, SIZE), new byte[SIZE * SIZE], new TreeIndex(SIZE, SIZE, MapGenerator.TREE_CELL_SIZE));
+    }
+
+    // a chunk made from data that already exists, e.g. one read back by WorldFile
+    Chunk(int chunkX, int chunkY, FloatGrid heightMap, FloatGrid moistureMap, byte[] tiles, TreeIndex trees){
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.heightMap = heightMap;
+        this.moistureMap = moistureMap;
+        this.tiles = tiles;
+        this.trees = trees;
+    }
+
+    // a flat chunk that stands in for chunks that are still being generated
+    public static Chunk placeholder(){
+        Chunk chunk = new Chunk(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        Arrays.fill(chunk.tiles, Tiles.PLACEHOLDER);
+
+        int[] layer = new int[SIZE * SIZE];
+        Arrays.fill(layer, Tiles.argb(Tiles.PLACEHOLDER));
+        int[][] layers = new int[TerrainBaker.TIDE_LEVELS][];
+        Arrays.fill(layers, layer);
+        chunk.baked = new BakedChunk(layers, 0, 0);
+
+        return chunk;
+    }
+
+    // about how much heap the chunk holds on to. Heights and moistures still in a mapped file don't count
+    public long getHeapBytes(){
+        long bytes = tiles.length + trees.getHeapBytes();
+        if (!heightMap.isOffHeap()){
+            bytes += 2L * SIZE * SIZE * Float.BYTES;
+        }
+
+        BakedChunk baked = this.baked;
+        if (baked != null){
+            for (int level = 0; level < baked.layers.length; level++){
+                if (level == 0 || baked.layers[level] != baked.layers[level - 1]){ // without the tide they are all one array
+                    bytes += (long) baked.layers[level].length * Integer.BYTES;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public byte getTile(int localX, int localY){
+        return tiles[localY * SIZE + localX];
+    }
+
+    public Color getColor(int localX, int localY){
+        return Tiles.color(tiles[localY * SIZE + localX]);
+    }
+}
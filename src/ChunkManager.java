@@ -0,0 +1,453 @@
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class ChunkManager {
+    MapGenerator generator;
+    TerrainBaker baker;
+    WorldFile saved; // chunks in here are read back instead of generated, null for a new world
+    final Object savedLock = new Object(); // held while chunks are read from saved, and while save swaps it for the new file
+    Map<Long, Chunk> chunks; // in least recently used order
+    Set<Long> pending; // chunks that are queued or being generated
+    ExecutorService workers;
+    long maxBytes; // the chunks are evicted once their getHeapBytes add up to more than this
+    long cachedBytes;
+
+    Chunk placeholder; // drawn while a chunk is still being generated
+    Consumer<Chunk> bakeListener; // told about every chunk whose baked colors changed, e.g. so the TerrainPyramid can keep them
+
+    // hits and misses count lookups of a different chunk than the one before, so reading every tile of a chunk is
+    // one lookup. A chunk that arrives or is evicted counts again the next time it is looked up
+    long lastKey = key(Integer.MIN_VALUE, Integer.MIN_VALUE); // the placeholder's coordinates, nothing looks those up
+    long hits;
+    long misses;
+    long evictions;
+    long bakes; // stamps the bakes in the order they looked at their neighbours
+    int[] treeIds = new int[0]; // findTrees' scratch space, grown to the largest query
+
+    final int prefetchDistance = 1; // how many chunks ahead of the viewport to generate when the camera moves
+
+    public ChunkManager(MapGenerator generator, long maxBytes, TerrainBaker baker){
+        this(generator, maxBytes, baker, null);
+    }
+
+    // saved has to come from the same seed and settings as generator, chunks it doesn't have are generated as usual
+    public ChunkManager(MapGenerator generator, long maxBytes, TerrainBaker baker, WorldFile saved){
+        this.generator = generator;
+        this.saved = saved;
+        this.baker = baker;
+        this.maxBytes = maxBytes;
+        if (saved != null){
+            generator.cutTrees.addAll(saved.cutTrees);
+        }
+
+        chunks = new LinkedHashMap<>(16, 0.75f, true);
+        pending = new HashSet<>();
+        placeholder = Chunk.placeholder();
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // leave a core for the game loop
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "chunk-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // returns the chunk at chunk coordinate (chunkX, chunkY), or the placeholder if it hasn't been generated yet
+    public synchronized Chunk getChunk(int chunkX, int chunkY){
+        long key = key(chunkX, chunkY);
+        boolean counted = key != lastKey;
+        lastKey = key;
+
+        Chunk chunk = chunks.get(key);
+        if (chunk == null){
+            if (counted){
+                misses++;
+            }
+            request(chunkX, chunkY);
+            return placeholder; // never wait for the generator on the render thread
+        }
+
+        if (counted){
+            hits++;
+        }
+        return chunk;
+    }
+
+    // the chunk if it has been generated, null otherwise. Unlike getChunk this never queues anything
+    public synchronized Chunk getLoadedChunk(int chunkX, int chunkY){
+        return chunks.get(key(chunkX, chunkY));
+    }
+
+    // queues the chunk if it isn't loaded or on its way yet. Unlike getChunk this doesn't count as a hit or a miss
+    public synchronized void requestChunk(int chunkX, int chunkY){
+        if (!chunks.containsKey(key(chunkX, chunkY))){
+            request(chunkX, chunkY);
+        }
+    }
+
+    // x and y are world tile coordinates and can be anything, including negative
+    public byte getTile(int x, int y){
+        Chunk chunk = getChunk(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(y, Chunk.SIZE));
+        return chunk.getTile(Math.floorMod(x, Chunk.SIZE), Math.floorMod(y, Chunk.SIZE));
+    }
+
+    public Color getColor(int x, int y){
+        Chunk chunk = getChunk(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(y, Chunk.SIZE));
+        return chunk.getColor(Math.floorMod(x, Chunk.SIZE), Math.floorMod(y, Chunk.SIZE));
+    }
+
+    /**
+     * Writes the world coordinates of the trees no further than radius from world tile (x, y) into treesX and treesY
+     * and returns how many there were, at most treesX.length. Chunks that haven't been generated yet have no trees.
+     */
+    public synchronized int findTrees(int x, int y, int radius, int[] treesX, int[] treesY){
+        if (treeIds.length < treesX.length){
+            treeIds = new int[treesX.length];
+        }
+        int[] ids = treeIds;
+        int found = 0;
+
+        for (int chunkY = Math.floorDiv(y - radius, Chunk.SIZE); chunkY <= Math.floorDiv(y + radius, Chunk.SIZE); chunkY++){
+            for (int chunkX = Math.floorDiv(x - radius, Chunk.SIZE); chunkX <= Math.floorDiv(x + radius, Chunk.SIZE); chunkX++){
+                Chunk chunk = getLoadedChunk(chunkX, chunkY);
+                if (chunk == null){
+                    continue;
+                }
+
+                int originX = chunkX * Chunk.SIZE;
+                int originY = chunkY * Chunk.SIZE;
+                int count = chunk.trees.queryRadius(x - originX, y - originY, radius, ids);
+                for (int i = 0; i < count && found < treesX.length; i++){
+                    treesX[found] = originX + chunk.trees.getX(ids[i]);
+                    treesY[found] = originY + chunk.trees.getY(ids[i]);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Cuts down the tree at world tile (x, y): takes it out of its chunk's index, puts the ground back under its tiles
+     * and has the chunks those are in baked again, along with their neighbours whose shadows can see them. False if
+     * there is no tree there. The generator is told too, so the tree stays gone when its chunks are evicted and made
+     * again, including the parts of it in neighbours that aren't loaded right now.
+     */
+    public boolean removeTree(int x, int y){
+        Chunk chunk = getLoadedChunk(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(y, Chunk.SIZE));
+        if (chunk == null){
+            return false;
+        }
+
+        int tree;
+        synchronized (chunk.trees){ // save may be reading it on another thread
+            tree = chunk.trees.find(Math.floorMod(x, Chunk.SIZE), Math.floorMod(y, Chunk.SIZE));
+            if (tree == -1 || !chunk.trees.remove(tree)){
+                return false;
+            }
+        }
+        generator.cutTree(x, y);
+
+        // the same tiles addTrees covers: the point, left and right of it, the top and the trunk below
+        int[][] parts = generator.realTrees ? new int[][]{{0, 0}, {-1, 0}, {1, 0}, {0, -1}, {0, 1}} : new int[][]{{0, 0}};
+        Set<Chunk> rebake = new HashSet<>();
+        for (int[] part : parts){
+            int tileX = x + part[0];
+            int tileY = y + part[1];
+            Chunk partChunk = getLoadedChunk(Math.floorDiv(tileX, Chunk.SIZE), Math.floorDiv(tileY, Chunk.SIZE));
+            if (partChunk == null){
+                continue;
+            }
+            byte ground = generator.getBiome(tileX, tileY);
+            synchronized (partChunk.trees){
+                // bakes and saves read the tiles on other threads, so they get a new array rather than a change under them
+                byte[] tiles = partChunk.tiles.clone();
+                tiles[Math.floorMod(tileY, Chunk.SIZE) * Chunk.SIZE + Math.floorMod(tileX, Chunk.SIZE)] = ground;
+                partChunk.tiles = tiles;
+            }
+
+            // the colors of a tile depend on the tiles next to it (shadows, color averaging), so those chunks too
+            for (int aroundY = tileY - 1; aroundY <= tileY + 1; aroundY++){
+                for (int aroundX = tileX - 1; aroundX <= tileX + 1; aroundX++){
+                    Chunk around = getLoadedChunk(Math.floorDiv(aroundX, Chunk.SIZE), Math.floorDiv(aroundY, Chunk.SIZE));
+                    if (around != null){
+                        rebake.add(around);
+                    }
+                }
+            }
+        }
+
+        for (Chunk changed : rebake){
+            workers.execute(() -> bake(changed));
+        }
+        return true;
+    }
+
+    /**
+     * Queues every chunk the viewport touches, plus the chunks just ahead of it in the direction
+     * the camera is moving (deltaX, deltaY), so they are usually ready before they come into view.
+     */
+    public synchronized void prefetch(int viewX, int viewY, int viewSize, int deltaX, int deltaY){
+        int startX = Math.floorDiv(viewX, Chunk.SIZE);
+        int startY = Math.floorDiv(viewY, Chunk.SIZE);
+        int endX = Math.floorDiv(viewX + viewSize, Chunk.SIZE);
+        int endY = Math.floorDiv(viewY + viewSize, Chunk.SIZE);
+
+        if (deltaX < 0){
+            startX -= prefetchDistance;
+        } else if (deltaX > 0){
+            endX += prefetchDistance;
+        }
+
+        if (deltaY < 0){
+            startY -= prefetchDistance;
+        } else if (deltaY > 0){
+            endY += prefetchDistance;
+        }
+
+        for (int chunkY = startY; chunkY <= endY; chunkY++){
+            for (int chunkX = startX; chunkX <= endX; chunkX++){
+                if (!chunks.containsKey(key(chunkX, chunkY))){
+                    request(chunkX, chunkY);
+                }
+            }
+        }
+    }
+
+    // true once every chunk under the view has been generated
+    public synchronized boolean isLoaded(int viewX, int viewY, int viewSize){
+        for (int chunkY = Math.floorDiv(viewY, Chunk.SIZE); chunkY <= Math.floorDiv(viewY + viewSize, Chunk.SIZE); chunkY++){
+            for (int chunkX = Math.floorDiv(viewX, Chunk.SIZE); chunkX <= Math.floorDiv(viewX + viewSize, Chunk.SIZE); chunkX++){
+                if (!chunks.containsKey(key(chunkX, chunkY))){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void request(int chunkX, int chunkY){
+        long key = key(chunkX, chunkY);
+        if (!pending.add(key)){
+            return; // already on its way
+        }
+
+        workers.execute(() -> {
+            Chunk chunk;
+            WorldFile readFrom;
+            synchronized (savedLock){
+                readFrom = saved;
+                chunk = readFrom != null ? readFrom.readChunk(chunkX, chunkY) : null;
+            }
+            if (chunk == null){
+                chunk = generator.generateChunk(chunkX, chunkY);
+            }
+            bake(chunk); // baked before it is visible so it is never drawn without its layers
+
+            // the shadows and tide along the edges of this chunk and its neighbours can see each other now. Any of them,
+            // this one included, whose bake didn't see every chunk around it that is loaded now is baked again. Two
+            // neighbours that arrive together both find the other here, since it is checked under the same lock as the put
+            List<Chunk> stale = new ArrayList<>(9);
+            synchronized (this){
+                if (readFrom != null && readFrom != saved){
+                    detach(chunk); // read just before a save let go of that file, so save didn't see it
+                }
+                pending.remove(key);
+                put(key, chunk);
+
+                for (int y = -1; y <= 1; y++){
+                    for (int x = -1; x <= 1; x++){
+                        Chunk around = chunks.get(key(chunkX + x, chunkY + y));
+                        if (around != null && around.baked.neighbours != loadedNeighbours(around.chunkX, around.chunkY)){
+                            stale.add(around);
+                        }
+                    }
+                }
+            }
+            for (Chunk around : stale){
+                bake(around);
+            }
+        });
+    }
+
+    /**
+     * Bakes chunk with the neighbours that are loaded right now. Bakes run on several workers at once and can finish in
+     * any order, so the result only replaces the chunk's current one if it saw a newer set of neighbours.
+     */
+    private void bake(Chunk chunk){
+        Chunk[] area = new Chunk[9];
+        int neighbours;
+        long stamp;
+        synchronized (this){
+            stamp = ++bakes;
+            neighbours = loadedNeighbours(chunk.chunkX, chunk.chunkY) | 1 << 4;
+            for (int y = -1; y <= 1; y++){
+                for (int x = -1; x <= 1; x++){
+                    area[(y + 1) * 3 + x + 1] = (x == 0 && y == 0) ? chunk : chunks.get(key(chunk.chunkX + x, chunk.chunkY + y));
+                }
+            }
+        }
+
+        BakedChunk baked = baker.bake(area, neighbours, stamp);
+        boolean installed = false;
+        synchronized (this){
+            if (chunk.baked == null || chunk.baked.stamp < stamp){
+                chunk.baked = baked;
+                installed = true;
+
+                // a chunk baked again, e.g. once its neighbours arrive, can have more or fewer layer arrays than before
+                if (chunk.cachedBytes != 0){ // still in the cache
+                    long bytes = chunk.getHeapBytes();
+                    cachedBytes += bytes - chunk.cachedBytes;
+                    chunk.cachedBytes = bytes;
+                    evict();
+                }
+            }
+        }
+        if (installed && bakeListener != null){
+            bakeListener.accept(chunk);
+        }
+    }
+
+    // adds the chunk to the cache and evicts the least recently used ones until it fits. Needs the lock
+    private void put(long key, Chunk chunk){
+        chunk.cachedBytes = chunk.getHeapBytes();
+        cachedBytes += chunk.cachedBytes;
+        Chunk replaced = chunks.put(key, chunk);
+        if (replaced != null){
+            cachedBytes -= replaced.cachedBytes;
+            replaced.cachedBytes = 0;
+        }
+        if (key == lastKey){
+            lastKey = key(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        }
+        evict();
+    }
+
+    // evicts the least recently used chunks until the rest fit in maxBytes, always keeping one. Needs the lock
+    private void evict(){
+        Iterator<Chunk> eldest = chunks.values().iterator();
+        while (cachedBytes > maxBytes && chunks.size() > 1){
+            Chunk evicted = eldest.next();
+            eldest.remove();
+            cachedBytes -= evicted.cachedBytes;
+            evicted.cachedBytes = 0;
+            evictions++;
+            if (key(evicted.chunkX, evicted.chunkY) == lastKey){
+                lastKey = key(Integer.MIN_VALUE, Integer.MIN_VALUE);
+            }
+        }
+    }
+
+    // which of the 3 x 3 chunks around (chunkX, chunkY) are loaded, row major. The chunk itself is bit 4
+    private int loadedNeighbours(int chunkX, int chunkY){
+        int loaded = 0;
+        for (int y = -1; y <= 1; y++){
+            for (int x = -1; x <= 1; x++){
+                if (chunks.containsKey(key(chunkX + x, chunkY + y))){
+                    loaded |= 1 << ((y + 1) * 3 + x + 1);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Writes every loaded chunk to path, along with the chunks of the world this one was loaded from that have been
+     * evicted since, so nothing that was saved before is lost. Afterwards chunks are read back from the new file.
+     *
+     * A file that is still mapped can't be replaced on Windows, so the loaded chunks first get heap copies of the
+     * heights and moistures they were reading from the old file and the old file is let go of before the move.
+     */
+    public void save(Path path) throws IOException {
+        synchronized (savedLock){
+            List<Chunk> toSave;
+            WorldFile previous;
+            synchronized (this){
+                toSave = new ArrayList<>(chunks.values());
+                previous = saved;
+                saved = null;
+            }
+
+            if (previous != null){
+                Set<Long> loaded = new HashSet<>();
+                for (Chunk chunk : toSave){
+                    loaded.add(key(chunk.chunkX, chunk.chunkY));
+                }
+                for (long key : previous.offsets.keySet()){
+                    if (!loaded.contains(key)){
+                        toSave.add(previous.readChunk((int) (key >> 32), (int) key));
+                    }
+                }
+                for (Chunk chunk : toSave){
+                    detach(chunk);
+                }
+                synchronized (this){
+                    // the copies are on the heap now, so they count towards the cache
+                    cachedBytes = 0;
+                    for (Chunk chunk : chunks.values()){
+                        chunk.cachedBytes = chunk.getHeapBytes();
+                        cachedBytes += chunk.cachedBytes;
+                    }
+                }
+            }
+
+            try {
+                WorldFile.save(path, generator, toSave);
+            } catch (IOException e){
+                synchronized (this){
+                    saved = previous; // the evicted chunks are still only in there
+                }
+                throw e;
+            }
+
+            WorldFile written = WorldFile.open(path);
+            synchronized (this){
+                saved = written;
+            }
+        }
+    }
+
+    // gives the chunk heap copies of its heights and moistures if they are still in a mapped file
+    private static void detach(Chunk chunk){
+        if (chunk.heightMap.isOffHeap()){
+            chunk.heightMap = chunk.heightMap.copy();
+            chunk.moistureMap = chunk.moistureMap.copy();
+        }
+    }
+
+    public synchronized int getLoadedChunkCount(){
+        return chunks.size();
+    }
+
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    public synchronized long getEvictions(){
+        return evictions;
+    }
+
+    public synchronized String getStats(){
+        return "chunks: " + chunks.size() + " (" + (cachedBytes >> 20) + "/" + (maxBytes >> 20) + " MB) pending: " + pending.size() + " hits: " + hits + " misses: " + misses + " evictions: " + evictions;
+    }
+
+    private static long key(int chunkX, int chunkY){
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+}
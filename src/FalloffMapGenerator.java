@@ -1,25 +1,76 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * The falloff that sinks the edges of a finite map under water: 0 in the middle, 1 at the edge and beyond.
+ * It only depends on how far a point is from the center, so the curve is worked out once into a table with one
+ * entry per half tile of distance and looked up while the tiles are made, instead of storing a size x size map.
+ * Tables are cached by (shape, size, curve) and shared by every MapGenerator, so regenerating a map costs nothing.
+ */
 public class FalloffMapGenerator {
+    /**
+     * How far a point is from the center of the map. dx and dy are |2x - size| and |2y - size|, which are whole
+     * numbers, and the result is scaled so the middle of an edge is size.
+     */
+    public interface Shape {
+        double distance(int dx, int dy);
+    }
+
+    public static final Shape SQUARE = (dx, dy) -> Math.max(dx, dy); // the original falloff, an island with square-ish coasts
+    public static final Shape RADIAL = (dx, dy) -> Math.sqrt((double) dx * dx + (double) dy * dy); // a round island
+
+    static final double A = 2;
+    static final double B = 2.2d;
 
-    public static double[][] generateFalloffMap(int size){
-        double[][] map = new double[size][size];
+    private record Key(Shape shape, int size, double a, double b, String curveName){}
 
-        for (int i = 0; i < size; i++){
-            for (int j = 0; j < size; j++){
-                double y = i / (double)size * 2 - 1;
-                double x = j / (double)size * 2 - 1;
+    private static final Map<Key, FalloffMapGenerator> cache = new ConcurrentHashMap<>();
 
-                double value = Math.max(Math.abs(x), Math.abs(y));
-                map[j][i] = evaluate(value);
-            }
+    final Shape shape;
+    final int size;
+    final double[] curve; // curve[d] is the falloff at distance d / size, for d = 0 to size
+
+    // builds the table without caching it, use get so it is only built once
+    public FalloffMapGenerator(Shape shape, int size, DoubleUnaryOperator falloff){
+        this.shape = shape;
+        this.size = size;
+
+        curve = new double[size + 1];
+        for (int d = 0; d <= size; d++){
+            curve[d] = falloff.applyAsDouble(d / (double) size);
         }
+    }
 
-        return map;
+    // the original square falloff
+    public static FalloffMapGenerator get(int size){
+        return get(SQUARE, size, A, B);
     }
 
-    private static double evaluate(double value){
-        double a = 2;
-        double b = 2.2d;
+    // value^a / (value^a + (b - b * value)^a): a sets how sharp the coast is, b how far out it starts
+    public static FalloffMapGenerator get(Shape shape, int size, double a, double b){
+        return cache.computeIfAbsent(new Key(shape, size, a, b, null), key -> new FalloffMapGenerator(shape, size, value -> evaluate(value, a, b)));
+    }
+
+    // any curve over [0, 1], cached by its name, so give different curves different names
+    public static FalloffMapGenerator get(Shape shape, int size, String curveName, DoubleUnaryOperator falloff){
+        return cache.computeIfAbsent(new Key(shape, size, 0, 0, curveName), key -> new FalloffMapGenerator(shape, size, falloff));
+    }
+
+    // the falloff of a single point, anything outside of the map is fully under water
+    public double falloffAt(int x, int y){
+        double distance = shape.distance(Math.abs(2 * x - size), Math.abs(2 * y - size));
+        if (distance >= size){
+            return curve[size];
+        }
+
+        // whole numbers for SQUARE, in between two entries for RADIAL
+        int index = (int) distance;
+        double t = distance - index;
+        return t == 0 ? curve[index] : curve[index] + (curve[index + 1] - curve[index]) * t;
+    }
 
+    private static double evaluate(double value, double a, double b){
         return (Math.pow(value, a) / (Math.pow(value, a) + Math.pow(b - b * value, a)));
     }
 }
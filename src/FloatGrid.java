@@ -0,0 +1,82 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A width x height grid of floats stored in one flat row major array, so (x, y) and (x + 1, y) sit next to each other.
+ * Loops over a grid should go y on the outside and x on the inside to walk it in storage order.
+ */
+public class FloatGrid {
+    final int width;
+    final int height;
+    final float[] values; // null when the grid lives off heap
+    final FloatBuffer buffer; // null when the grid lives on the heap
+
+    public FloatGrid(int width, int height){
+        this.width = width;
+        this.height = height;
+        values = new float[width * height];
+        buffer = null;
+    }
+
+    private FloatGrid(int width, int height, FloatBuffer buffer){
+        this.width = width;
+        this.height = height;
+        values = null;
+        this.buffer = buffer;
+    }
+
+    // a grid backed by a direct ByteBuffer, it doesn't count towards the heap and isn't moved by the GC
+    public static FloatGrid offHeap(int width, int height){
+        ByteBuffer bytes = ByteBuffer.allocateDirect(width * height * Float.BYTES).order(ByteOrder.nativeOrder());
+        return new FloatGrid(width, height, bytes.asFloatBuffer());
+    }
+
+    // a grid over floats that already exist somewhere else, e.g. part of a memory mapped file. Writes go through to the
+    // buffer if it can be written, a grid over a read only one (like WorldFile's mapping) throws ReadOnlyBufferException on set
+    public static FloatGrid wrap(int width, int height, FloatBuffer buffer){
+        return new FloatGrid(width, height, buffer);
+    }
+
+    // a copy of the grid on the heap, e.g. to keep its values after the file it wraps has been let go of
+    public FloatGrid copy(){
+        FloatGrid copy = new FloatGrid(width, height);
+        for (int i = 0; i < width * height; i++){
+            copy.values[i] = get(i);
+        }
+        return copy;
+    }
+
+    public float get(int x, int y){
+        return get(y * width + x);
+    }
+
+    public void set(int x, int y, float value){
+        set(y * width + x, value);
+    }
+
+    // index is y * width + x
+    public float get(int index){
+        return values != null ? values[index] : buffer.get(index);
+    }
+
+    public void set(int index, float value){
+        if (values != null){
+            values[index] = value;
+        } else {
+            buffer.put(index, value);
+        }
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    public boolean isOffHeap(){
+        return values == null;
+    }
+}
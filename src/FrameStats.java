@@ -0,0 +1,322 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Frame timing for the game loop: nanosecond timings per phase, a histogram of frame times, late and dropped frames
+ * and the bytes allocated per frame. Keeps the last HISTORY frames for the csv export and the whole session in the
+ * histogram. Recording is cheap and allocation free so it can stay on all the time.
+ */
+public class FrameStats implements FrameStatsMBean {
+    public enum Phase { UPDATE, PAINT }
+
+    static final int HISTORY = 36000; // 10 minutes at 60 FPS
+
+    // Log linear histogram in microseconds, like HdrHistogram: 32 linear buckets per power of two,
+    // so every bucket is within about 3% of the values in it
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_SHIFT = 24; // up to about 17 minutes
+    static final int BUCKETS = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+    final long targetFrameNanos;
+
+    long[] histogram;
+    long frameCount;
+    long lateFrames; // took longer than the target
+    long droppedFrames; // whole target intervals that were skipped because a frame ran long
+    long totalFrameNanos;
+    long maxFrameNanos;
+    long totalUpdateNanos;
+    long totalPaintNanos;
+    long totalAllocatedBytes;
+
+    // the frame in progress
+    long updateNanos;
+    long paintNanos;
+    long allocatedBytes;
+
+    // the last HISTORY frames, as a ring
+    long[] historyFrame;
+    long[] historyUpdate;
+    long[] historyPaint;
+    long[] historyAllocated;
+
+    static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    public FrameStats(int targetFPS){
+        targetFrameNanos = 1000000000L / targetFPS;
+
+        histogram = new long[BUCKETS];
+        historyFrame = new long[HISTORY];
+        historyUpdate = new long[HISTORY];
+        historyPaint = new long[HISTORY];
+        historyAllocated = new long[HISTORY];
+    }
+
+    // a copy of everything recorded so far, the frame in progress aside
+    private FrameStats(FrameStats from){
+        targetFrameNanos = from.targetFrameNanos;
+
+        histogram = from.histogram.clone();
+        frameCount = from.frameCount;
+        lateFrames = from.lateFrames;
+        droppedFrames = from.droppedFrames;
+        totalFrameNanos = from.totalFrameNanos;
+        maxFrameNanos = from.maxFrameNanos;
+        totalUpdateNanos = from.totalUpdateNanos;
+        totalPaintNanos = from.totalPaintNanos;
+        totalAllocatedBytes = from.totalAllocatedBytes;
+
+        historyFrame = from.historyFrame.clone();
+        historyUpdate = from.historyUpdate.clone();
+        historyPaint = from.historyPaint.clone();
+        historyAllocated = from.historyAllocated.clone();
+    }
+
+    /**
+     * A copy of the stats as they are now, for writing out without holding up the threads that record. Copying is a
+     * few arraycopies under the lock, the files are then written from the copy.
+     */
+    public synchronized FrameStats snapshot(){
+        return new FrameStats(this);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter(){
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()){
+            ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+            return (com.sun.management.ThreadMXBean) threads;
+        }
+        return null;
+    }
+
+    // bytes allocated by the calling thread so far, 0 if the JVM can't tell
+    public static long allocatedBytes(){
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    // adds a phase of the current frame, bytes is what the phase allocated on its thread
+    public synchronized void recordPhase(Phase phase, long nanos, long bytes){
+        switch (phase){
+            case UPDATE:
+                updateNanos += nanos;
+                break;
+            case PAINT:
+                paintNanos += nanos;
+                break;
+        }
+        allocatedBytes += bytes;
+    }
+
+    // closes the current frame, frameNanos is the time from the start of this frame to the start of the next
+    public synchronized void recordFrame(long frameNanos){
+        int slot = (int) (frameCount % HISTORY);
+        historyFrame[slot] = frameNanos;
+        historyUpdate[slot] = updateNanos;
+        historyPaint[slot] = paintNanos;
+        historyAllocated[slot] = allocatedBytes;
+
+        histogram[bucket(frameNanos / 1000)]++;
+        frameCount++;
+        totalFrameNanos += frameNanos;
+        maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+        totalUpdateNanos += updateNanos;
+        totalPaintNanos += paintNanos;
+        totalAllocatedBytes += allocatedBytes;
+
+        if (frameNanos > targetFrameNanos + targetFrameNanos / 10){ // 10% slack for timer jitter
+            lateFrames++;
+            droppedFrames += Math.max(0, frameNanos / targetFrameNanos - 1);
+        }
+
+        updateNanos = 0;
+        paintNanos = 0;
+        allocatedBytes = 0;
+    }
+
+    static int bucket(long micros){
+        if (micros < 2 * SUB_BUCKETS){
+            return (int) Math.max(0, micros);
+        }
+
+        int shift = (63 - Long.numberOfLeadingZeros(micros)) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT){
+            return BUCKETS - 1;
+        }
+        return SUB_BUCKETS * (shift + 1) + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    // the largest value that lands in the bucket, in microseconds
+    static long bucketValue(int bucket){
+        if (bucket < 2 * SUB_BUCKETS){
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long start = (long) (bucket - SUB_BUCKETS * (shift + 1) + SUB_BUCKETS) << shift;
+        return start + (1L << shift) - 1;
+    }
+
+    // the frame time in milliseconds that the given fraction (0 to 1) of frames were at or under
+    public synchronized double percentileMillis(double fraction){
+        if (frameCount == 0){
+            return 0;
+        }
+
+        long target = (long) Math.ceil(fraction * frameCount);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++){
+            seen += histogram[i];
+            if (seen >= Math.max(1, target)){
+                return Math.min(bucketValue(i) / 1000d, maxFrameNanos / 1e6);
+            }
+        }
+        return maxFrameNanos / 1e6;
+    }
+
+    @Override
+    public synchronized long getFrameCount(){
+        return frameCount;
+    }
+
+    @Override
+    public synchronized long getLateFrames(){
+        return lateFrames;
+    }
+
+    @Override
+    public synchronized long getDroppedFrames(){
+        return droppedFrames;
+    }
+
+    @Override
+    public synchronized double getMeanFrameMillis(){
+        return frameCount == 0 ? 0 : totalFrameNanos / 1e6 / frameCount;
+    }
+
+    @Override
+    public double getP50FrameMillis(){
+        return percentileMillis(0.5);
+    }
+
+    @Override
+    public double getP99FrameMillis(){
+        return percentileMillis(0.99);
+    }
+
+    @Override
+    public synchronized double getMaxFrameMillis(){
+        return maxFrameNanos / 1e6;
+    }
+
+    @Override
+    public synchronized double getMeanUpdateMillis(){
+        return frameCount == 0 ? 0 : totalUpdateNanos / 1e6 / frameCount;
+    }
+
+    @Override
+    public synchronized double getMeanPaintMillis(){
+        return frameCount == 0 ? 0 : totalPaintNanos / 1e6 / frameCount;
+    }
+
+    @Override
+    public synchronized long getMeanAllocatedBytesPerFrame(){
+        return frameCount == 0 ? 0 : totalAllocatedBytes / frameCount;
+    }
+
+    // one line per frame of the history, oldest first, written from a snapshot. Returns the path or the error
+    @Override
+    public String exportCsv(String path){
+        return snapshot().writeCsv(path);
+    }
+
+    // a summary of the whole session and the non empty histogram buckets, written from a snapshot. Returns the path or the error
+    @Override
+    public String exportJson(String path){
+        return snapshot().writeJson(path);
+    }
+
+    // exportCsv without taking a snapshot first, only for a snapshot that nothing records into
+    public String writeCsv(String path){
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))){
+            out.println("frame,frameNanos,updateNanos,paintNanos,allocatedBytes");
+
+            long first = Math.max(0, frameCount - HISTORY);
+            for (long frame = first; frame < frameCount; frame++){
+                int slot = (int) (frame % HISTORY);
+                out.println(frame + "," + historyFrame[slot] + "," + historyUpdate[slot] + "," + historyPaint[slot] + "," + historyAllocated[slot]);
+            }
+            return path;
+        } catch (IOException e){
+            return e.toString();
+        }
+    }
+
+    // exportJson without taking a snapshot first, only for a snapshot that nothing records into
+    public String writeJson(String path){
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))){
+            out.println("{");
+            out.println("  \"targetFrameMillis\": " + targetFrameNanos / 1e6 + ",");
+            out.println("  \"frames\": " + frameCount + ",");
+            out.println("  \"lateFrames\": " + lateFrames + ",");
+            out.println("  \"droppedFrames\": " + droppedFrames + ",");
+            out.println("  \"meanFrameMillis\": " + getMeanFrameMillis() + ",");
+            out.println("  \"p50FrameMillis\": " + getP50FrameMillis() + ",");
+            out.println("  \"p90FrameMillis\": " + percentileMillis(0.9) + ",");
+            out.println("  \"p99FrameMillis\": " + getP99FrameMillis() + ",");
+            out.println("  \"p999FrameMillis\": " + percentileMillis(0.999) + ",");
+            out.println("  \"maxFrameMillis\": " + getMaxFrameMillis() + ",");
+            out.println("  \"meanUpdateMillis\": " + getMeanUpdateMillis() + ",");
+            out.println("  \"meanPaintMillis\": " + getMeanPaintMillis() + ",");
+            out.println("  \"meanAllocatedBytesPerFrame\": " + getMeanAllocatedBytesPerFrame() + ",");
+            out.println("  \"histogramMicros\": {");
+
+            String separator = "";
+            for (int i = 0; i < BUCKETS; i++){
+                if (histogram[i] != 0){
+                    out.print(separator + "    \"" + bucketValue(i) + "\": " + histogram[i]);
+                    separator = ",\n";
+                }
+            }
+            out.println();
+            out.println("  }");
+            out.println("}");
+            return path;
+        } catch (IOException e){
+            return e.toString();
+        }
+    }
+
+    @Override
+    public synchronized void reset(){
+        Arrays.fill(histogram, 0);
+        frameCount = 0;
+        lateFrames = 0;
+        droppedFrames = 0;
+        totalFrameNanos = 0;
+        maxFrameNanos = 0;
+        totalUpdateNanos = 0;
+        totalPaintNanos = 0;
+        totalAllocatedBytes = 0;
+
+        updateNanos = 0;
+        paintNanos = 0;
+        allocatedBytes = 0;
+    }
+
+    // the lines of the on screen overlay
+    public synchronized String[] overlay(){
+        long last = frameCount == 0 ? 0 : historyFrame[(int) ((frameCount - 1) % HISTORY)];
+        return new String[]{
+                String.format("frame %.2f ms (%.0f fps)", last / 1e6, last == 0 ? 0 : 1e9 / last),
+                String.format("p50 %.2f  p99 %.2f  max %.2f ms", getP50FrameMillis(), getP99FrameMillis(), getMaxFrameMillis()),
+                String.format("update %.3f  paint %.3f ms", getMeanUpdateMillis(), getMeanPaintMillis()),
+                "late " + lateFrames + "  dropped " + droppedFrames + " / " + frameCount,
+                "alloc " + getMeanAllocatedBytesPerFrame() + " B/frame"
+        };
+    }
+}
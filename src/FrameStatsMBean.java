@@ -0,0 +1,19 @@
+// What FrameStats shows over JMX (jconsole, VisualVM, ...), registered as RedDead:type=FrameStats
+public interface FrameStatsMBean {
+    long getFrameCount();
+    long getLateFrames();
+    long getDroppedFrames();
+
+    double getMeanFrameMillis();
+    double getP50FrameMillis();
+    double getP99FrameMillis();
+    double getMaxFrameMillis();
+
+    double getMeanUpdateMillis();
+    double getMeanPaintMillis();
+    long getMeanAllocatedBytesPerFrame();
+
+    String exportCsv(String path);
+    String exportJson(String path);
+    void reset();
+}
@@ -1,54 +1,139 @@
-import javax.swing.*;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.awt.*;
-import java.util.Map;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Random;
-
-import static java.util.Map.entry;
-
-public class GamePanel extends JPanel implements Runnable {
-    Thread gameThread;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The game runs on two threads. The game thread (run) updates the world at a fixed TPS, however long frames take,
+ * and the render thread draws as fast as FPS allows straight into a BufferStrategy, placing the camera between the
+ * last two updates so movement stays smooth when the two rates don't line up.
+ */
+public class GamePanel extends Canvas implements Runnable {
+    Thread gameThread; // simulation
+    Thread renderThread;
 
     int state; // 0 = main menu, 1 = game
     final int tileSize = 5;
     final int noiseMapSize = 2000;
     final int visableMapSize = 100;
     MapGenerator mapGenerator;
+    ChunkManager world;
+    TerrainPyramid pyramid; // the world's colors at 1/2, 1/4, ... for zooming out
+
+    int zoom; // 0 is a pixel block per tile, each level out shows twice as far. - and = zoom out and in
+    final int maxZoom = 5; // 32 times further out, the whole of a noiseMapSize world fits
+    boolean zoomOutKeyDown;
+    boolean zoomInKeyDown;
+
+    Minimap minimap; // the whole noiseMapSize world in the top right corner
+    volatile boolean showMinimap = true; // M toggles it on the game thread, the render thread reads it
+    boolean minimapKeyDown;
 
-    int offsetX;
+    int offsetX; // the tile in the top left corner after the last update
     int offsetY;
     int tideCount;
-    int tidePosition;
+    volatile int tidePosition;
+
+    // the camera in tiles, before and after the last update. The render thread draws somewhere between the two
+    double cameraX;
+    double cameraY;
+    double lastCameraX;
+    double lastCameraY;
+    long lastTickTime; // System.nanoTime() of the last update
 
     final boolean averageColors = false;
     final boolean tide = true; // water will go in and out
     final boolean elevationShadows = true;
+    final boolean animateSurfaces = true; // moving water and cloud shadows
+    final int animationPeriod = 16; // frames between two noise samples of a tile, the rest are faded in between
+    final boolean infiniteWorld = true; // if false the world is an island the size of noiseMapSize
+    final long maxCacheBytes = 48L << 20; // a chunk with its tide layers is about 95KB, so this is around 500 of them
+    final Path saveFile; // F5 saves the world here, and if it exists the game starts in it
+    boolean saveKeyDown;
+    volatile boolean saving; // F5 does nothing until the last save is done
 
     int FPS = 60; // FPS
+    int TPS = 60; // updates per second, the camera speed and the tide don't depend on it
+    final double cameraSpeed = 60; // tiles per second
+    final int maxCatchUpTicks = 5; // after a long stall skip ahead instead of running a burst of updates
+
+    FrameStats stats; // frame timings, also on JMX as RedDead:type=FrameStats
+    volatile boolean showStats; // F3 toggles the overlay, F4 writes frame-stats-<time>.csv and .json
+    boolean statsKeyDown;
+    boolean exportKeyDown;
+
+    // files are written on here so the game thread never waits on the disk
+    final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "background-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static final Color OVERLAY = new Color(0, 0, 0, 160); // behind the stats and messages
+    static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    static final Font TITLE_FONT = new Font(Font.MONOSPACED, Font.BOLD, 28);
+
+    volatile String message; // shown at the bottom of the screen for messageNanos, e.g. where F4 wrote the stats
+    volatile long messageTime;
+    final long messageNanos = 4000000000L;
 
     Random random = new Random();
+    SurfaceAnimator animator; // null if animateSurfaces is off
+
+    BufferedImage frame; // the map is drawn into this and then onto the screen in one go, one tile bigger than the view so it can be drawn between tiles
+    int[] pixels; // the frame's raster
 
-    Map<Integer, Integer> biomeHeights = Map.ofEntries(
-            entry(new Color(164,148,116).getRGB(), 0),
-            entry(new Color(112, 164, 79).getRGB(), 1),
-            entry(new Color(212,188,140).getRGB(), 1),
-            entry(new Color(96,146,94).getRGB(), 1),
-            entry(new Color(52,116,84).getRGB(), 1),
-            entry(new Color(172, 113, 74).getRGB(), 2),
-            entry(new Color(92, 135, 65).getRGB(), 2),
-            entry(new Color(146, 74, 54).getRGB(), 3),
-            entry(new Color(136,136,136).getRGB(), 3),
-            entry(new Color(58, 22, 14).getRGB(), 4),
-            entry(new Color(85,85,85).getRGB(), 4),
-            entry(new Color(217, 215, 199).getRGB(), 5)
-    );
+    // what the frame holds from the last paint, so the next one only draws what changed
+    boolean frameValid;
+    int frameViewX; // the tile in the frame's top left corner
+    int frameViewY;
+    int frameZoom;
+    long[] frameChunks; // the chunks in the frame and the baked layers they were drawn from
+    int[][] frameLayers;
+    int frameChunkCount;
 
     public GamePanel(Color background, int size){
+        this(background, size, Path.of("world.dat"));
+    }
+
+    GamePanel(Color background, int size, Path saveFile){
+        this.saveFile = saveFile;
         this.setPreferredSize(new Dimension(size, size));
         this.setBackground(background);
-        this.setDoubleBuffered(true);
+        this.setIgnoreRepaint(true); // the render thread draws every frame itself
 
-        mapGenerator = new MapGenerator(random.nextInt(-1000, 1000), noiseMapSize);
-        mapGenerator.generateMap(0, 0);
+        // chunks are generated (or read from the save) the first time they come into view, so nothing is made up front
+        WorldFile saved = null;
+        if (Files.exists(saveFile)){
+            try {
+                saved = WorldFile.open(saveFile);
+            } catch (IOException e) {
+                e.printStackTrace(); // start a new world instead
+            }
+        }
+
+        if (saved != null){
+            mapGenerator = new MapGenerator(saved.seed, saved.mapSize, saved.useFalloffMap);
+        } else {
+            mapGenerator = new MapGenerator(random.nextInt(-1000, 1000), noiseMapSize, !infiniteWorld);
+        }
+        world = new ChunkManager(mapGenerator, maxCacheBytes, new TerrainBaker(averageColors, tide, elevationShadows), saved);
+        pyramid = new TerrainPyramid(world, visableMapSize + 1, maxZoom, noiseMapSize);
+        minimap = new Minimap(pyramid, noiseMapSize, 128);
+        if (animateSurfaces){
+            animator = new SurfaceAnimator(mapGenerator.seed, visableMapSize + 1, animationPeriod, FPS);
+        }
 
         state = 1;
         tideCount = 0;
@@ -56,240 +141,466 @@ public class GamePanel extends JPanel implements Runnable {
 
         offsetX = (int) Math.round(noiseMapSize / 2d);
         offsetY = (int)Math.round(noiseMapSize / 2d);
+        cameraX = lastCameraX = offsetX;
+        cameraY = lastCameraY = offsetY;
+        world.prefetch(offsetX, offsetY, visableMapSize, 0, 0);
+
+        frame = new BufferedImage((visableMapSize + 1) * tileSize, (visableMapSize + 1) * tileSize, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        int chunksAcross = (visableMapSize + Chunk.SIZE - 1) / Chunk.SIZE + 1;
+        frameChunks = new long[2 * chunksAcross * chunksAcross]; // room for the last paint's chunks and this one's
+        frameLayers = new int[frameChunks.length][];
+
+        stats = new FrameStats(FPS);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName("RedDead:type=FrameStats"));
+        } catch (JMException e) {
+            e.printStackTrace(); // only the JMX view is lost, the overlay and export still work
+        }
+    }
 
-        System.out.println(biomeHeights);
+    // only called when AWT asks, e.g. when the window is uncovered. Draws the camera as of the last update
+    @Override
+    public void paint(Graphics g){
+        double x;
+        double y;
+        int zoom;
+        synchronized (this){
+            x = cameraX;
+            y = cameraY;
+            zoom = this.zoom;
+        }
+        render(g, x, y, zoom);
     }
 
-    public void paintComponent(Graphics g){
+    private void render(Graphics g, double cameraX, double cameraY, int zoom){
         switch (state){
             case 0:
                 paintMenu(g);
                 break;
             case 1:
-                paintMap(g);
+                paintMap(g, cameraX, cameraY, zoom);
                 break;
         }
 
     }
 
-    private void paintMap(Graphics g){
-        super.paintComponent(g);
+    // zoomed out the frame is drawn from the pyramid instead, a pixel block per 2^zoom x 2^zoom tiles, so a frame copies as much either way
+    private void paintMap(Graphics g, double cameraX, double cameraY, int zoom){
+        long start = System.nanoTime();
+        long startBytes = FrameStats.allocatedBytes();
 
-        Color[][] colors = mapGenerator.getColorMap();
         Graphics2D graphics = (Graphics2D) g;
 
-        tideCount = (tideCount > 60)? 0 : tideCount + 1;
+        int tideLevel = tidePosition == 0 ? 0 : tidePosition == 2 ? 2 : 1;
+
+        // the whole tiles under the camera, plus one more row and column for the part of a tile showing on the far side.
+        // Zoomed out these are pixels of the pyramid level, which are also Chunk.SIZE to a side
+        double pixelX = cameraX / (1 << zoom);
+        double pixelY = cameraY / (1 << zoom);
+        int viewX = (int) Math.floor(pixelX);
+        int viewY = (int) Math.floor(pixelY);
+        int viewSize = visableMapSize + 1;
+        SurfaceAnimator animator = zoom == 0 ? this.animator : null; // the water and clouds are too small to see further out
+
+        // the frame from the last paint is moved by however many tiles the camera crossed, then only the tiles that
+        // came into view are copied from the chunks' baked layers, along with every tile of a chunk whose layer changed
+        // since (it finished generating, was rebaked, or the tide moved). Locked since AWT can ask for a paint while the render thread draws
+        synchronized (frame){
+            if (animator != null){
+                animator.advance(viewX, viewY);
+            }
 
-        if (tideCount == 0){
-            if (tidePosition >= 3){
-                tidePosition = 0;
-            } else{
-                tidePosition++;
+            int dx = viewX - frameViewX;
+            int dy = viewY - frameViewY;
+            boolean scroll = frameValid && zoom == frameZoom && Math.abs(dx) < viewSize && Math.abs(dy) < viewSize;
+            if (scroll && (dx != 0 || dy != 0)){
+                shiftFrame(dx, dy);
             }
-        }
 
-        for (int y = 0; y < visableMapSize; y++){
-            for (int x = 0; x < visableMapSize; x++){
-                int baseX = x + (int)Math.round(offsetX);
-                int baseY = y + (int)Math.round(offsetY);
+            // the tiles that were already in the frame, everything else in the view is new
+            int keptStartX = scroll ? Math.max(viewX, frameViewX) : 0;
+            int keptStartY = scroll ? Math.max(viewY, frameViewY) : 0;
+            int keptEndX = scroll ? Math.min(viewX, frameViewX) + viewSize : 0;
+            int keptEndY = scroll ? Math.min(viewY, frameViewY) + viewSize : 0;
 
-                if (averageColors){
-                    double R = 0;
-                    double G = 0;
-                    double B = 0;
+            int lastChunkCount = frameChunkCount;
+            frameChunkCount = 0;
 
-                    R += colors[baseX - 1][baseY].getRed() * colors[baseX - 1][baseY].getRed();
-                    G += colors[baseX - 1][baseY].getGreen() * colors[baseX - 1][baseY].getGreen();
-                    B += colors[baseX - 1][baseY].getBlue() * colors[baseX - 1][baseY].getBlue();
+            for (int chunkY = Math.floorDiv(viewY, Chunk.SIZE); chunkY * Chunk.SIZE < viewY + viewSize; chunkY++){
+                for (int chunkX = Math.floorDiv(viewX, Chunk.SIZE); chunkX * Chunk.SIZE < viewX + viewSize; chunkX++){
+                    int[] layer = zoom == 0 ? world.getChunk(chunkX, chunkY).baked.layers[tideLevel] : pyramid.get(zoom, chunkX, chunkY);
+                    if (layer == null){
+                        layer = world.placeholder.baked.layers[0]; // the pyramid tile isn't made yet
+                    }
+                    long key = ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+
+                    int startX = Math.max(viewX, chunkX * Chunk.SIZE);
+                    int startY = Math.max(viewY, chunkY * Chunk.SIZE);
+                    int endX = Math.min(viewX + viewSize, (chunkX + 1) * Chunk.SIZE);
+                    int endY = Math.min(viewY + viewSize, (chunkY + 1) * Chunk.SIZE);
+
+                    boolean changed = true;
+                    for (int i = 0; i < lastChunkCount; i++){
+                        if (frameChunks[i] == key){
+                            changed = frameLayers[i] != layer;
+                            break;
+                        }
+                    }
 
-                    R += colors[baseX + 1][baseY].getRed() * colors[baseX + 1][baseY].getRed() ;
-                    G += colors[baseX + 1][baseY].getGreen() * colors[baseX + 1][baseY].getGreen();
-                    B += colors[baseX + 1][baseY].getBlue() * colors[baseX + 1][baseY].getBlue();
+                    // recorded after the lookup, the last paint's entries are still in the front of the arrays
+                    int slot = lastChunkCount + frameChunkCount++;
+                    frameChunks[slot] = key;
+                    frameLayers[slot] = layer;
 
-                    R += colors[baseX][baseY - 1].getRed() * colors[baseX][baseY - 1].getRed();
-                    G += colors[baseX][baseY - 1].getGreen() * colors[baseX][baseY - 1].getGreen();
-                    B += colors[baseX][baseY - 1].getBlue() * colors[baseX][baseY - 1].getBlue();
+                    if (changed || !scroll){
+                        fillTiles(layer, animator, chunkX, chunkY, viewX, viewY, startX, startY, endX, endY);
+                        continue;
+                    }
 
-                    R += colors[baseX][baseY + 1].getRed() * colors[baseX][baseY + 1].getRed();
-                    G += colors[baseX][baseY + 1].getGreen() * colors[baseX][baseY + 1].getGreen();
-                    B += colors[baseX][baseY + 1].getBlue() * colors[baseX][baseY + 1].getBlue();
+                    // the new rows above and below what was kept, then the new columns left and right of it
+                    int midStartY = Math.max(startY, keptStartY);
+                    int midEndY = Math.min(endY, keptEndY);
+                    fillTiles(layer, animator, chunkX, chunkY, viewX, viewY, startX, startY, endX, Math.min(endY, keptStartY));
+                    fillTiles(layer, animator, chunkX, chunkY, viewX, viewY, startX, Math.max(startY, keptEndY), endX, endY);
+                    fillTiles(layer, animator, chunkX, chunkY, viewX, viewY, startX, midStartY, Math.min(endX, keptStartX), midEndY);
+                    fillTiles(layer, animator, chunkX, chunkY, viewX, viewY, Math.max(startX, keptEndX), midStartY, endX, midEndY);
+
+                    // and the kept tiles the water or a cloud has made lighter or darker since
+                    if (animator != null){
+                        for (int y = startY; y < endY; y++){
+                            int row = (y - chunkY * Chunk.SIZE) * Chunk.SIZE - chunkX * Chunk.SIZE;
+                            for (int x = startX; x < endX; x++){
+                                if (animator.changed(layer[row + x], x, y)){
+                                    fillTile(x - viewX, y - viewY, animator.draw(layer[row + x], x, y));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
 
-                    R = Math.round(Math.sqrt(R / 4d));
-                    G = Math.round(Math.sqrt(G / 4d));
-                    B = Math.round(Math.sqrt(B / 4d));
+            System.arraycopy(frameChunks, lastChunkCount, frameChunks, 0, frameChunkCount);
+            System.arraycopy(frameLayers, lastChunkCount, frameLayers, 0, frameChunkCount);
+            Arrays.fill(frameLayers, frameChunkCount, frameLayers.length, null);
+            frameViewX = viewX;
+            frameViewY = viewY;
+            frameZoom = zoom;
+            frameValid = true;
+
+            // shifted by the part of a tile the camera is past the whole tile
+            graphics.drawImage(frame, -(int) ((pixelX - viewX) * tileSize), -(int) ((pixelY - viewY) * tileSize), null);
+
+            // the minimap's image is updated in place too
+            if (showMinimap){
+                minimap.update();
+                minimap.draw(graphics, getWidth() - minimap.size - 8, 8, cameraX, cameraY, visableMapSize << zoom);
+            }
+        }
 
-                    graphics.setColor(new Color((int)R, (int)G, (int)B));
+        stats.recordPhase(FrameStats.Phase.PAINT, System.nanoTime() - start, FrameStats.allocatedBytes() - startBytes);
 
-                    if (tide && colors[x + offsetX][y + offsetY].equals(new Color(65, 155, 161)) && tidePosition != 0) {
-                        graphics.fillRect(x * tileSize, (y - 1) * tileSize, tileSize, tileSize);
-                        graphics.fillRect((x - 1) * tileSize, y * tileSize, tileSize, tileSize);
+        if (showStats){ // drawn after recording so the overlay's own text doesn't count
+            paintStats(graphics);
+        }
+        paintMessage(graphics);
+    }
 
-                        if (tidePosition == 2) {
-                            graphics.fillRect(x * tileSize, (y - 2) * tileSize, tileSize, tileSize);
-                            graphics.fillRect((x - 2) * tileSize, y * tileSize, tileSize, tileSize);
-                        }
-                    }
+    private void paintStats(Graphics2D graphics){
+        String[] lines = stats.overlay();
 
-                    if (elevationShadows){
-                        int RGB1 = colors[baseX][baseY].getRGB();
-                        int RGB2 = colors[baseX][baseY + 1].getRGB();
-                        int RGB3 = colors[baseX + 1][baseY].getRGB();
+        graphics.setColor(OVERLAY);
+        graphics.fillRect(0, 0, 260, 14 * lines.length + (animator == null ? 36 : 50));
+        graphics.setColor(Color.WHITE);
+        graphics.setFont(OVERLAY_FONT);
 
-                        if (biomeHeights.containsKey(RGB1) && biomeHeights.containsKey(RGB2) && biomeHeights.containsKey(RGB3)) {
-                            int value1 = biomeHeights.get(RGB1);
-                            int value2 = biomeHeights.get(RGB2);
-                            int value3 = biomeHeights.get(RGB3);
+        for (int i = 0; i < lines.length; i++){
+            graphics.drawString(lines[i], 5, 14 * (i + 1));
+        }
+        graphics.drawString(world.getStats(), 5, 14 * (lines.length + 1));
+        graphics.drawString("zoom: 1:" + (1 << zoom) + " pyramid tiles: " + pyramid.getTileCount(), 5, 14 * (lines.length + 2));
+        if (animator != null){
+            graphics.drawString("animation: " + animator.getSamples() + " samples", 5, 14 * (lines.length + 3));
+        }
+    }
 
-                            if (value1 < value2 || value1 < value3) {
-                                graphics.setColor(new Color((int) R, (int) G, (int) B).darker());
-                            }
-                        }
-                    }
-                } else{
-                    if (tide){
-                        Color waterColor = new Color(65, 155, 161);
-
-                        if (colors[x + offsetX][y + offsetY].equals(waterColor) && tidePosition != 0){
-                            graphics.setColor(waterColor);
-                            graphics.fillRect(x * tileSize, (y - 1) * tileSize, tileSize, tileSize);
-                            graphics.fillRect((x - 1) * tileSize, y * tileSize, tileSize, tileSize);
-
-                            if (tidePosition == 2){
-                                graphics.fillRect(x * tileSize, (y - 2) * tileSize, tileSize, tileSize);
-                                graphics.fillRect((x - 2) * tileSize, y * tileSize, tileSize, tileSize);
-                            }
-                        } else {
-                            graphics.setColor(colors[x + offsetX][y + offsetY]);
-                        }
+    private void paintMessage(Graphics2D graphics){
+        String message = this.message;
+        if (message == null || System.nanoTime() - messageTime > messageNanos){
+            return;
+        }
 
-                    } else{
-                        graphics.setColor(colors[x + offsetX][y + offsetY]);
-                    }
+        graphics.setFont(OVERLAY_FONT);
+        int width = graphics.getFontMetrics().stringWidth(message);
+        graphics.setColor(OVERLAY);
+        graphics.fillRect(0, getHeight() - 20, width + 10, 20);
+        graphics.setColor(Color.WHITE);
+        graphics.drawString(message, 5, getHeight() - 6);
+    }
 
-                    if (elevationShadows){
-                        int RGB1 = colors[baseX][baseY].getRGB();
-                        int RGB2 = colors[baseX][baseY + 1].getRGB();
-                        int RGB3 = colors[baseX - 1][baseY].getRGB();
-                        int RGB4 = colors[baseX + 1][baseY].getRGB();
-                        int RGB5 = colors[baseX][baseY - 1].getRGB();
-
-                        if (biomeHeights.containsKey(RGB1) && biomeHeights.containsKey(RGB2) && biomeHeights.containsKey(RGB3) && biomeHeights.containsKey(RGB4) && biomeHeights.containsKey(RGB5)) {
-                            int value1 = biomeHeights.get(RGB1);
-                            int value2 = biomeHeights.get(RGB2);
-                            int value3 = biomeHeights.get(RGB3);
-                            int value4 = biomeHeights.get(RGB4);
-                            int value5 = biomeHeights.get(RGB5);
-
-                            if (value1 > value2 || value1 > value3 || value1 > value4 || value1 > value5) {
-                                graphics.setColor(colors[baseX][baseY]);
-                                graphics.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
-                                graphics.setColor(new Color(0, 0, 0, 63));
-                            }
-                        }
-                    }
-                }
+    // can be called from any thread
+    private void showMessage(String text){
+        messageTime = System.nanoTime();
+        message = text;
+    }
 
-                graphics.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
+    // copies the tiles from startX, startY up to endX, endY (in tiles of the world, inside the chunk) into the frame
+    private void fillTiles(int[] layer, SurfaceAnimator animator, int chunkX, int chunkY, int viewX, int viewY, int startX, int startY, int endX, int endY){
+        for (int y = startY; y < endY; y++){
+            int row = (y - chunkY * Chunk.SIZE) * Chunk.SIZE - chunkX * Chunk.SIZE;
+            for (int x = startX; x < endX; x++){
+                fillTile(x - viewX, y - viewY, animator == null ? layer[row + x] : animator.draw(layer[row + x], x, y));
             }
         }
-
-        graphics.dispose();
     }
 
-    private void paintMenu(Graphics g){
-        super.paintComponent(g);
+    // moves the frame's pixels dx tiles left and dy tiles up, the tiles that were moved out of the way are left as they were
+    private void shiftFrame(int dx, int dy){
+        int width = (visableMapSize + 1) * tileSize;
+        int shiftX = dx * tileSize;
+        int shiftY = dy * tileSize;
+        int length = width - Math.abs(shiftX);
+        int from = Math.max(0, shiftX);
+        int to = Math.max(0, -shiftX);
+
+        // rows are copied in the order that never overwrites one before it is moved
+        if (shiftY >= 0){
+            for (int row = 0; row < width - shiftY; row++){
+                System.arraycopy(pixels, (row + shiftY) * width + from, pixels, row * width + to, length);
+            }
+        } else {
+            for (int row = width - 1; row >= -shiftY; row--){
+                System.arraycopy(pixels, (row + shiftY) * width + from, pixels, row * width + to, length);
+            }
+        }
+    }
 
-        Graphics2D g2 = (Graphics2D) g;
+    private void fillTile(int x, int y, int color){
+        int width = (visableMapSize + 1) * tileSize;
+        int start = y * tileSize * width + x * tileSize;
 
-        g2.setFont(new Font(Font.MONOSPACED, Font.BOLD, 28));
-        g2.drawString("The Wild West", 136, 100);
+        for (int row = 0; row < tileSize; row++){
+            Arrays.fill(pixels, start + row * width, start + row * width + tileSize, color);
+        }
+    }
 
-        JButton button1 = new JButton("Start");
-        JButton button2 = new JButton("Options");
-        JButton button3 = new JButton("Quit");
-        this.add(button1);
-        this.add(button2);
-        this.add(button3);
+    private void paintMenu(Graphics g){
+        Graphics2D g2 = (Graphics2D) g;
 
+        g2.setColor(getBackground());
+        g2.fillRect(0, 0, getWidth(), getHeight());
 
-        g2.dispose();
+        // a Canvas can't hold Swing components, the Start, Options and Quit buttons need to be drawn here once the menu is used
+        g2.setColor(Color.BLACK);
+        g2.setFont(TITLE_FONT);
+        g2.drawString("The Wild West", 136, 100);
     }
 
+    // call once the panel is on screen, the render thread needs it to be displayable to create its BufferStrategy
     public void startGameThread(){
-        gameThread = new Thread(this);
+        gameThread = new Thread(this, "game");
         gameThread.start();
+
+        renderThread = new Thread(this::renderLoop, "render");
+        renderThread.start();
     }
 
+    // one fixed step of the simulation, 1 / TPS seconds long
     public void update(){
+        int lastOffsetX = offsetX;
+        int lastOffsetY = offsetY;
+        double nextCameraX = cameraX;
+        double nextCameraY = cameraY;
+
+        int nextZoom = zoom;
+        if (Keyboard.isKeyPressed(KeyEvent.VK_MINUS) && !zoomOutKeyDown && zoom < maxZoom){
+            nextZoom++;
+        }
+        zoomOutKeyDown = Keyboard.isKeyPressed(KeyEvent.VK_MINUS);
+
+        if (Keyboard.isKeyPressed(KeyEvent.VK_EQUALS) && !zoomInKeyDown && zoom > 0){
+            nextZoom--;
+        }
+        zoomInKeyDown = Keyboard.isKeyPressed(KeyEvent.VK_EQUALS);
+
+        // the camera is the top left corner, move it so the middle of the view stays where it is
+        nextCameraX += visableMapSize / 2d * ((1 << zoom) - (1 << nextZoom));
+        nextCameraY += visableMapSize / 2d * ((1 << zoom) - (1 << nextZoom));
+
+        double step = cameraSpeed / TPS * (1 << nextZoom); // the same speed on screen at every zoom
 
+        if (Keyboard.isKeyPressed(KeyEvent.VK_F3) && !statsKeyDown){
+            showStats = !showStats;
+        }
+        statsKeyDown = Keyboard.isKeyPressed(KeyEvent.VK_F3);
+
+        if (Keyboard.isKeyPressed(KeyEvent.VK_F4) && !exportKeyDown){
+            String name = "frame-stats-" + System.currentTimeMillis();
+            FrameStats snapshot = stats.snapshot();
+            background.execute(() -> showMessage("Frame stats written to " + snapshot.writeCsv(name + ".csv") + " and " + snapshot.writeJson(name + ".json")));
+        }
+        exportKeyDown = Keyboard.isKeyPressed(KeyEvent.VK_F4);
+
+        if (Keyboard.isKeyPressed(KeyEvent.VK_M) && !minimapKeyDown){
+            showMinimap = !showMinimap;
+        }
+        minimapKeyDown = Keyboard.isKeyPressed(KeyEvent.VK_M);
+
+        if (Keyboard.isKeyPressed(KeyEvent.VK_F5) && !saveKeyDown && !saving){
+            saving = true;
+            showMessage("Saving the world...");
+            background.execute(() -> {
+                try {
+                    long start = System.nanoTime();
+                    world.save(saveFile); // the world keeps going, chunks that arrive meanwhile are in the next save
+                    showMessage("World saved to " + saveFile.toAbsolutePath() + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    showMessage("Couldn't save the world: " + e.getMessage());
+                } finally {
+                    saving = false;
+                }
+            });
+        }
+        saveKeyDown = Keyboard.isKeyPressed(KeyEvent.VK_F5);
 
         if (Keyboard.isKeyPressed(87)){ // w
             // System.out.println("W Pressed");
-            offsetY -= 1;
+            nextCameraY -= step;
         }
 
         if (Keyboard.isKeyPressed(83)){ // s
             // System.out.println("S Pressed");
-            offsetY += 1;
+            nextCameraY += step;
         }
 
         if (Keyboard.isKeyPressed(65)){ // a
             // System.out.println("A Pressed");
-            offsetX -= 1;
+            nextCameraX -= step;
         }
 
         if (Keyboard.isKeyPressed(68)){ // d
             //System.out.println("D Pressed");
-            offsetX += 1;
+            nextCameraX += step;
+        }
+
+        if (!infiniteWorld){
+            nextCameraX = clampCamera(nextCameraX, nextZoom);
+            nextCameraY = clampCamera(nextCameraY, nextZoom);
+        }
+
+        // the tide moves every 62 updates at 60 TPS, about once a second
+        tideCount = (tideCount > TPS)? 0 : tideCount + 1;
+
+        if (tideCount == 0){
+            if (tidePosition >= 3){
+                tidePosition = 0;
+            } else{
+                tidePosition++;
+            }
+        }
+
+        synchronized (this){
+            lastCameraX = nextZoom == zoom ? cameraX : nextCameraX; // no sliding across a zoom
+            lastCameraY = nextZoom == zoom ? cameraY : nextCameraY;
+            zoom = nextZoom;
+            cameraX = nextCameraX;
+            cameraY = nextCameraY;
+            offsetX = (int) Math.floor(cameraX);
+            offsetY = (int) Math.floor(cameraY);
+            lastTickTime = System.nanoTime();
         }
 
-        clampOffset();
+        if (zoom == 0){ // zoomed out the pyramid asks for the chunks it needs
+            world.prefetch(offsetX, offsetY, visableMapSize, offsetX - lastOffsetX, offsetY - lastOffsetY);
+        }
     }
 
+    // the game thread: runs update() TPS times a second, catching up when it falls behind
     @Override
     public void run(){
-
-        double drawInterval = 1000000000/FPS;
-        double nextDrawTime = System.nanoTime() + drawInterval;
+        long tickInterval = 1000000000L / TPS;
+        long accumulator = 0;
+        long lastTime = System.nanoTime();
 
         while (gameThread != null){ // game loop
+            long now = System.nanoTime();
+            accumulator = Math.min(accumulator + now - lastTime, maxCatchUpTicks * tickInterval);
+            lastTime = now;
 
-            update();
+            while (accumulator >= tickInterval){
+                long updateStart = System.nanoTime();
+                long updateBytes = FrameStats.allocatedBytes();
+                update();
+                stats.recordPhase(FrameStats.Phase.UPDATE, System.nanoTime() - updateStart, FrameStats.allocatedBytes() - updateBytes);
 
-            repaint();
+                accumulator -= tickInterval;
+            }
 
-            try {
-                double remainingTime = nextDrawTime - System.nanoTime();
-                remainingTime = clamp0(remainingTime / 1000000);
+            waitUntil(now + tickInterval - accumulator);
+        }
+    }
 
-                Thread.sleep((long)remainingTime);
+    // the render thread: draws a frame, shows it and waits for the next one, FPS times a second
+    private void renderLoop(){
+        createBufferStrategy(2);
+        BufferStrategy strategy = getBufferStrategy();
+
+        long frameInterval = 1000000000L / FPS;
+        long nextFrame = System.nanoTime();
+        long frameStart = nextFrame;
+
+        while (renderThread != null){
+            // how far we are into the current update, the camera is drawn that far from the last position to the current one
+            double x;
+            double y;
+            int zoom;
+            synchronized (this){
+                zoom = this.zoom;
+                double alpha = Math.min(1, (System.nanoTime() - lastTickTime) / (1000000000d / TPS));
+                x = lastCameraX + (cameraX - lastCameraX) * alpha;
+                y = lastCameraY + (cameraY - lastCameraY) * alpha;
+            }
 
-                nextDrawTime += drawInterval;
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            do {
+                do {
+                    // only the strategy's graphics are ours to dispose, the ones AWT passes to paint are not
+                    Graphics graphics = strategy.getDrawGraphics();
+                    try {
+                        render(graphics, x, y, zoom);
+                    } finally {
+                        graphics.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync(); // flush the frame to the screen now on systems that buffer drawing (X11)
+
+            nextFrame += frameInterval;
+            if (nextFrame < System.nanoTime() - frameInterval){
+                nextFrame = System.nanoTime(); // fell more than a frame behind, don't rush to make it up
             }
-        }
-    }
+            waitUntil(nextFrame);
 
-    private double clamp0(double value){
-        if (value < 0){
-            return 0;
-        } else{
-            return value;
+            long now = System.nanoTime();
+            stats.recordFrame(now - frameStart);
+            frameStart = now;
         }
     }
 
-    private void clampOffset(){
-        if (offsetX > noiseMapSize - visableMapSize){
-            offsetX = noiseMapSize - visableMapSize;
-        } else if (offsetX < 0){
-            offsetX = 0;
+    // Thread.sleep only has millisecond resolution and often oversleeps, so park until about a millisecond before and spin the rest
+    private static void waitUntil(long deadline){
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0){
+            if (remaining > 1000000){
+                LockSupport.parkNanos(remaining - 1000000);
+            } else {
+                Thread.onSpinWait();
+            }
         }
+    }
 
-        if (offsetY > noiseMapSize - visableMapSize){
-            offsetY = noiseMapSize - visableMapSize;
-        } else if (offsetY < 0){
-            offsetY = 0;
-        }
+    private double clampCamera(double value, int zoom){
+        return Math.max(0, Math.min(noiseMapSize - (visableMapSize << zoom), value));
     }
 }
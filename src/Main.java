@@ -1,5 +1,14 @@
+import java.util.Arrays;
+
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("batch")){
+            // no window, and set before anything touches AWT
+            System.setProperty("java.awt.headless", "true");
+            BatchGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         new Display();
     }
 }
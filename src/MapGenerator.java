@@ -1,11 +1,18 @@
 import java.awt.*;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class MapGenerator {
-    double[][] heightMap;
-    double[][] moistureMap;
-    double[][] falloffMap;
-    Color[][] mapColors;
+    FloatGrid heightMap;
+    FloatGrid moistureMap;
+    BiomeTable biomes; // which biome a height and moisture make, see biomes.txt
+    FalloffMapGenerator falloff; // null unless useFalloffMap, shared with every other map of the same size
+    byte[] tiles; // one Tiles id per tile, row major
+    TreeIndex trees; // the trees of the whole map, see generateMap
     int mapSize;
     int seed;
     double scale;
@@ -13,47 +20,32 @@ public class MapGenerator {
     int octaves;
     double persistence;
     double lacunarity;
+    double maxPossibleHeight;
 
-    final boolean useFalloffMap = true; // if true the entire map is surrounded by water
+    final boolean useFalloffMap; // if true the entire map is surrounded by water
     final boolean realTrees = true; // if false trees are just a black marker
+    final boolean parallelGeneration = true; // if true the noise maps are generated in row bands across all cores
+
+    static final int TREE_CELL_SIZE = 16; // tiles per side of a TreeIndex cell, trees are at least 5 apart so a cell holds about 10
 
     PoissonDiskGenerator treeGenerator;
-    Random random;
-
-    // COLORS:
-
-    // BIOMES
-    Color deepOcean = new Color(52, 123, 128);
-    Color ocean = new Color(65, 155, 161);
-    Color beach = new Color(164,148,116);
-    Color desert = new Color(212,188,140);
-    Color grasslands = new Color(112, 164, 79);
-    Color tropicalSeasonedForest = new Color(96,146,94);
-    Color tropicalRainForest = new Color(52,116,84);
-    Color darkDesert = new Color(172, 113, 74);
-    Color darkGrasslands = new Color(92, 135, 65);
-    Color dryLightRocks = new Color(146, 74, 54);
-    Color lightRocks = new Color(136,136,136);
-    Color dryDarkRocks = new Color(58, 22, 14);
-    Color darkRocks = new Color(85,85,85);
-    Color snow = new Color(217, 215, 199);
-
-    // TREES
-    Color palmTree = new Color(111, 153, 64);
-    Color pineTree = new Color(42, 47, 35);
-    Color normalTree = new Color(34, 138, 11);
-    Color treeTrunk = new Color(92, 67, 34);
+    PoissonDiskTiles treeTiles; // the tree points of one chunk each, spaced out across chunk borders too
+    Point[] heightOffsets; // the octave offsets of the chunks, the same for every one of them
+    Point[] moistureOffsets;
+    final Set<Long> cutTrees = ConcurrentHashMap.newKeySet(); // world tiles of the chunk trees that were cut down, see cutTree
 
     public MapGenerator(int seed, int mapSize){
+        this(seed, mapSize, true);
+    }
+
+    public MapGenerator(int seed, int mapSize, boolean useFalloffMap){
         this.seed = seed;
         this.mapSize = mapSize;
-
-        heightMap = new double[this.mapSize][this.mapSize];
-        moistureMap = new double[this.mapSize][this.mapSize];
-        mapColors = new Color[this.mapSize][this.mapSize];
-        falloffMap = FalloffMapGenerator.generateFalloffMap(mapSize);
-
-        treeGenerator = new PoissonDiskGenerator(5, mapSize - 50, seed);
+        this.useFalloffMap = useFalloffMap;
+        biomes = BiomeTable.getDefault();
+        if (useFalloffMap){
+            falloff = FalloffMapGenerator.get(mapSize);
+        }
 
         scale = 500d;
         scaleMultiplier = 10d;
@@ -61,239 +53,419 @@ public class MapGenerator {
         persistence = 0.2d; // 0 < x < 1
         lacunarity = 5d; // 1 < x
 
-        random = new Random(seed); // might wanna change seed by 1 or somthing
+        treeTiles = new PoissonDiskTiles(5, Chunk.SIZE, seed);
+        heightOffsets = octaveOffsets(seed, 0, 0);
+        moistureOffsets = octaveOffsets(seed + 1, 0, 0);
+
+        double amplitude = 1;
+        for (int i = 0; i < octaves; i++){
+            maxPossibleHeight += amplitude;
+            amplitude *= persistence;
+        }
     }
 
 
     public void generateMap(int offsetX, int offsetY){
-        heightMap = generateNoiseMap(offsetX, offsetY);
+        // the tree points are only needed for a whole map, chunks make their own
+        if (treeGenerator == null){
+            treeGenerator = new PoissonDiskGenerator(5, mapSize - 50, seed);
+        }
+
+        heightMap = generateNoiseMap(seed, offsetX, offsetY);
         moistureMap = generateMoisetureMap(offsetX, offsetY);
 
-        mapColors = generateMapColors();
+        tiles = generateTiles();
     }
 
-    private double[][] generateNoiseMap(int offsetX, int offsetY){
-        double[][] hMap = new double[mapSize][mapSize];
+    /**
+     * Generates one chunk of the world at chunk coordinate (chunkX, chunkY).
+     * Heights are normalized against the analytical height range instead of the min/max of the map,
+     * so every chunk can be generated on its own and still lines up with its neighbours.
+     */
+    public Chunk generateChunk(int chunkX, int chunkY){
+        int originX = chunkX * Chunk.SIZE;
+        int originY = chunkY * Chunk.SIZE;
+
+        Chunk chunk = new Chunk(chunkX, chunkY);
+        FloatGrid chunkHeights = chunk.heightMap; // the fields are volatile, read once
+        FloatGrid chunkMoistures = chunk.moistureMap;
+        byte[] chunkTiles = chunk.tiles;
+        double halfSize = mapSize / 2d;
 
-        Random oRandom = new Random(seed);
-        Point[] octaveOffsets = new Point[octaves];
+        float[] heights = new float[Chunk.SIZE];
+        float[] moistures = new float[Chunk.SIZE];
+        float[] noise = new float[Chunk.SIZE];
 
-        double maxPossibleHeight = 0;
-        double amplitude = 1;
-        double frequency;
-        double minValue = Integer.MAX_VALUE;
-        double maxValue = Integer.MIN_VALUE;
+        for (int y = 0; y < Chunk.SIZE; y++){
+            int worldY = originY + y;
+            sampleRow(originX, worldY, Chunk.SIZE, halfSize, heightOffsets, seed, heights, noise);
+            sampleRow(originX, worldY, Chunk.SIZE, halfSize, moistureOffsets, seed + 1, moistures, noise);
 
-        for (int i = 0; i < octaves; i++) {
-            int oOffsetX = oRandom.nextInt(-100000, 100000) + offsetX;
-            int oOffsetY = oRandom.nextInt(-100000, 100000) + offsetY;
-            octaveOffsets[i] = new Point(oOffsetX, oOffsetY);
+            for (int x = 0; x < Chunk.SIZE; x++){
+                int worldX = originX + x;
 
-            maxPossibleHeight += amplitude;
-            amplitude *= persistence;
+                double height = chunkHeight(heights[x], worldX, worldY);
+                double moisture = chunkMoisture(moistures[x]);
+
+                chunkHeights.set(x, y, (float) height);
+                chunkMoistures.set(x, y, (float) moisture);
+                chunkTiles[y * Chunk.SIZE + x] = biomes.classify(height, moisture);
+            }
         }
 
-        double halfSize = mapSize / 2d;
+        long chunkSeed = chunkSeed(chunkX, chunkY);
+        addTrees(chunkTiles, Chunk.SIZE, treeTiles.tile(chunkX, chunkY), chunkSeed, chunk.trees, originX, originY, cutTrees, false); // chunks are already generated in parallel
+        if (realTrees){
+            addNeighbourTrees(chunk);
+        }
 
-        for(int y = 0; y < mapSize; y++){
-            for (int x = 0; x < mapSize; x++){
+        return chunk;
+    }
 
-                amplitude = 1;
-                frequency = 1;
-                float noiseHeight = 0;
-                for (int i = 0; i < octaves; i++){
-                    double sampleX = (x - halfSize + octaveOffsets[i].x) / scale * frequency;
-                    double sampleY = (y - halfSize + octaveOffsets[i].y) / scale * frequency;
+    // noise2 * 2 - 1 is in [-3, 1], so the fBm sum is in [-3, 1] * maxPossibleHeight
+    private double chunkHeight(double noise, int worldX, int worldY){
+        double height = clamp01(inverseLerp(-3 * maxPossibleHeight, maxPossibleHeight, noise));
+        if (useFalloffMap){
+            height = clamp01(height - falloff.falloffAt(worldX, worldY));
+        }
+        return height;
+    }
 
-                    double noiseValue = OpenSimplex2.noise2(seed, sampleX, sampleY) * 2d - 1;
-                    noiseHeight += (noiseValue * amplitude);
+    private double chunkMoisture(double noise){
+        return clamp01(inverseLerp(-3 * maxPossibleHeight, maxPossibleHeight, noise));
+    }
 
-                    amplitude *= persistence;
-                    frequency *= lacunarity;
+    /**
+     * Stamps the parts of the trees of the eight chunks around that hang over into this one. addTrees leaves them out
+     * since they belong to the chunk their point is in, but that chunk's points come from treeTiles and its rolls from
+     * its chunkSeed, so whether a tree grows there can be worked out here without generating the whole chunk.
+     */
+    private void addNeighbourTrees(Chunk chunk){
+        for (int dy = -1; dy <= 1; dy++){
+            for (int dx = -1; dx <= 1; dx++){
+                if (dx == 0 && dy == 0){
+                    continue;
                 }
 
-                if (noiseHeight > maxValue){
-                    maxValue = noiseHeight;
-                }
+                int neighbourX = chunk.chunkX + dx;
+                int neighbourY = chunk.chunkY + dy;
+                PoissonDiskGenerator points = treeTiles.tile(neighbourX, neighbourY);
+                long neighbourSeed = chunkSeed(neighbourX, neighbourY);
 
-                if (noiseHeight < minValue){
-                    minValue = noiseHeight;
-                }
+                for (int i = 0; i < points.getCellCount(); i++){
+                    if (!points.hasPoint(i)){
+                        continue;
+                    }
 
-                hMap[x][y] = noiseHeight;
-            }
-        }
+                    // in the neighbour's own tiles, then in this chunk's
+                    int pointX = (int) Math.floor(points.pointX[i]);
+                    int pointY = (int) Math.floor(points.pointY[i]);
+                    if (pointX >= Chunk.SIZE || pointY >= Chunk.SIZE){
+                        continue; // addTrees skips these too
+                    }
+                    int treeX = pointX + dx * Chunk.SIZE;
+                    int treeY = pointY + dy * Chunk.SIZE;
+                    if (treeX < -1 || treeY < -1 || treeX > Chunk.SIZE || treeY > Chunk.SIZE){
+                        continue; // too far away to reach this chunk
+                    }
 
-        for (int y = 0; y < mapSize; y++){
-            for (int x = 0; x < mapSize; x++){
-                hMap[x][y] = inverseLerp(minValue, maxValue, hMap[x][y]);
+                    int worldX = neighbourX * Chunk.SIZE + pointX;
+                    int worldY = neighbourY * Chunk.SIZE + pointY;
+                    if (cutTrees.contains(treeKey(worldX, worldY))){
+                        continue;
+                    }
+                    byte tree = treeFor(getBiome(worldX, worldY), roll(neighbourSeed, i));
+                    if (tree == 0){
+                        continue;
+                    }
+
+                    setTile(chunk.tiles, Chunk.SIZE, Chunk.SIZE, treeX, treeY, Tiles.treeCenter(tree));
+                    setTile(chunk.tiles, Chunk.SIZE, Chunk.SIZE, treeX + 1, treeY, tree);
+                    setTile(chunk.tiles, Chunk.SIZE, Chunk.SIZE, treeX - 1, treeY, tree);
+                    setTile(chunk.tiles, Chunk.SIZE, Chunk.SIZE, treeX, treeY + 1, Tiles.TREE_TRUNK);
+                    setTile(chunk.tiles, Chunk.SIZE, Chunk.SIZE, treeX, treeY - 1, tree);
+                }
             }
         }
+    }
 
-        return hMap;
+    // the biome generateChunk gives world tile (worldX, worldY), before any trees grow on it
+    public byte getBiome(int worldX, int worldY){
+        double halfSize = mapSize / 2d;
+        double height = samplePoint(worldX, worldY, halfSize, heightOffsets, seed);
+        double moisture = samplePoint(worldX, worldY, halfSize, moistureOffsets, seed + 1);
+        return biomes.classify(chunkHeight(height, worldX, worldY), chunkMoisture(moisture));
     }
 
-    private double[][] generateMoisetureMap(int offsetX, int offsetY){
+    /**
+     * From now on generateChunk leaves out the tree whose point is at world tile (worldX, worldY), in its own chunk and
+     * where it hangs over into the ones around it, so a cut tree doesn't grow back when its chunks are made again.
+     */
+    public void cutTree(int worldX, int worldY){
+        cutTrees.add(treeKey(worldX, worldY));
+    }
 
-        seed += 1;
-        double[][] mMap = generateNoiseMap(offsetX, offsetY);
-        seed -= 1;
+    static long treeKey(int worldX, int worldY){
+        return ((long) worldX << 32) | (worldY & 0xFFFFFFFFL);
+    }
 
-        return mMap;
+    private long chunkSeed(int chunkX, int chunkY){
+        long hash = seed * 0x9E3779B97F4A7C15L;
+        hash ^= chunkX * 0x632BE59BD9B4E019L;
+        hash ^= chunkY * 0x85157AF5L;
+        return hash ^ (hash >>> 29);
     }
 
-    private Color[][] generateMapColors(){
-        Color[][] cMap = new Color[mapSize][mapSize];
+    private Point[] octaveOffsets(int noiseSeed, int offsetX, int offsetY){
+        Random oRandom = new Random(noiseSeed);
+        Point[] octaveOffsets = new Point[octaves];
 
-        for(int y = 0; y < mapSize; y++){
-            for (int x = 0; x < mapSize; x++){
-                if (useFalloffMap){
-                    heightMap[x][y] = clamp01(heightMap[x][y] - falloffMap[x][y]);
-                }
+        for (int i = 0; i < octaves; i++) {
+            int oOffsetX = oRandom.nextInt(-100000, 100000) + offsetX;
+            int oOffsetY = oRandom.nextInt(-100000, 100000) + offsetY;
+            octaveOffsets[i] = new Point(oOffsetX, oOffsetY);
+        }
 
-                if (heightMap[x][y] == 0){ // super deed ocean
+        return octaveOffsets;
+    }
 
-                    cMap[x][y] = new Color(52, 123, 128); // new Color(68,68,123);
+    private FloatGrid generateNoiseMap(int noiseSeed, int offsetX, int offsetY){
+        FloatGrid hMap = new FloatGrid(mapSize, mapSize);
 
-                } else if (heightMap[x][y] <= 0.1){ // deep ocean
+        Point[] octaveOffsets = octaveOffsets(noiseSeed, offsetX, offsetY);
+        double halfSize = mapSize / 2d;
 
-                    cMap[x][y] = deepOcean;
+        // the map is split into bands of rows, each band keeps its own min and max so the bands never share state
+        int bands = parallelGeneration ? Math.min(mapSize, Runtime.getRuntime().availableProcessors() * 4) : 1;
+        int bandHeight = (mapSize + bands - 1) / bands;
+        double[] bandMin = new double[bands];
+        double[] bandMax = new double[bands];
 
-                } else  if (heightMap[x][y] <= 0.3){ // ocean
+        forEachBand(bands, band -> {
+            double minValue = Integer.MAX_VALUE;
+            double maxValue = Integer.MIN_VALUE;
+            float[] heights = new float[mapSize];
+            float[] noise = new float[mapSize];
 
-                    cMap[x][y] = ocean;
+            int endY = Math.min(mapSize, (band + 1) * bandHeight);
+            for (int y = band * bandHeight; y < endY; y++){
+                sampleRow(0, y, mapSize, halfSize, octaveOffsets, noiseSeed, heights, noise);
 
-                } else if (heightMap[x][y] <= 0.35){ // beach
+                for (int x = 0; x < mapSize; x++){
+                    float noiseHeight = heights[x];
 
-                    cMap[x][y] = beach; // new Color(254, 196, 119);
+                    if (noiseHeight > maxValue){
+                        maxValue = noiseHeight;
+                    }
 
-                } else if (heightMap[x][y] <= 0.55){
+                    if (noiseHeight < minValue){
+                        minValue = noiseHeight;
+                    }
 
-                    if (moistureMap[x][y] <= 0.2){ // desert
+                    hMap.set(x, y, noiseHeight);
+                }
+            }
 
-                        cMap[x][y] = desert;
+            bandMin[band] = minValue;
+            bandMax[band] = maxValue;
+        });
 
-                    } else if (moistureMap[x][y] <= 0.4){
+        // min and max are exact, so merging the bands gives the same result as the sequential scan
+        double minValue = Integer.MAX_VALUE;
+        double maxValue = Integer.MIN_VALUE;
+        for (int band = 0; band < bands; band++){
+            minValue = Math.min(minValue, bandMin[band]);
+            maxValue = Math.max(maxValue, bandMax[band]);
+        }
 
-                        cMap[x][y] = grasslands; // grasslands
+        double min = minValue;
+        double max = maxValue;
+        forEachBand(bands, band -> {
+            int endY = Math.min(mapSize, (band + 1) * bandHeight);
+            for (int i = band * bandHeight * mapSize; i < endY * mapSize; i++){
+                hMap.set(i, (float) inverseLerp(min, max, hMap.get(i)));
+            }
+        });
 
-                    } else if (moistureMap[x][y] <= 0.65){
+        return hMap;
+    }
 
-                        cMap[x][y] = tropicalSeasonedForest; // Tropical seasoned forest
+    // fills heights with the fBm sum of the tiles (startX, y) to (startX + width - 1, y), noise is scratch space of the same width
+    private void sampleRow(int startX, int y, int width, double halfSize, Point[] octaveOffsets, int noiseSeed, float[] heights, float[] noise){
+        Arrays.fill(heights, 0, width, 0);
 
-                    } else{
+        double amplitude = 1;
+        double frequency = 1;
+        for (int i = 0; i < octaves; i++){
+            double sampleX = (startX - halfSize + octaveOffsets[i].x) / scale * frequency;
+            double sampleY = (y - halfSize + octaveOffsets[i].y) / scale * frequency;
 
-                        cMap[x][y] = tropicalRainForest; // tropical rain forest
+            // one call per octave for the whole row instead of one per tile
+            OpenSimplex2.noise2Row(noiseSeed, sampleX, frequency / scale, sampleY, noise, 0, width);
 
-                    }
-                } else if (heightMap[x][y] <= 0.7){ // dark grasslands / dark desert
-                    if (moistureMap[x][y] <= 0.5){
-                        cMap[x][y] = darkDesert;
-                    } else {
-                        cMap[x][y] = darkGrasslands;
-                    }
-                } else if (heightMap[x][y] <= 0.8){ // rocky
+            for (int x = 0; x < width; x++){
+                heights[x] += ((noise[x] * 2d - 1) * amplitude);
+            }
 
-                    if (moistureMap[x][y] <= 0.4){
-                        cMap[x][y] = dryLightRocks;
-                    } else{
-                        cMap[x][y] = lightRocks;
-                    }
+            amplitude *= persistence;
+            frequency *= lacunarity;
+        }
+    }
 
-                } else if (heightMap[x][y] <= 0.9){ // Dark rocks
-                    if (moistureMap[x][y] <= 0.4){
-                        cMap[x][y] = dryDarkRocks;
-                    } else {
-                        cMap[x][y] = darkRocks;
-                    }
+    /**
+     * The fBm sum sampleRow gives tile (worldX, y) of a chunk. The x of the noise is worked out from the chunk's left
+     * edge the way noise2Row does it, and noise2 of the same x is exactly what noise2Row returns, so the float comes
+     * out bit for bit the same as in generateChunk.
+     */
+    private float samplePoint(int worldX, int y, double halfSize, Point[] octaveOffsets, int noiseSeed){
+        int startX = Math.floorDiv(worldX, Chunk.SIZE) * Chunk.SIZE;
+        float height = 0;
 
-                } else { // snow
-                    cMap[x][y] = snow;
-                }
-            }
+        double amplitude = 1;
+        double frequency = 1;
+        for (int i = 0; i < octaves; i++){
+            double sampleX = (startX - halfSize + octaveOffsets[i].x) / scale * frequency;
+            double sampleY = (y - halfSize + octaveOffsets[i].y) / scale * frequency;
+
+            float noise = OpenSimplex2.noise2(noiseSeed, sampleX + (worldX - startX) * (frequency / scale), sampleY);
+            height += ((noise * 2d - 1) * amplitude);
+
+            amplitude *= persistence;
+            frequency *= lacunarity;
         }
-        cMap = addTrees(cMap);
+        return height;
+    }
 
-        return cMap;
+    private void forEachBand(int bands, IntConsumer action){
+        IntStream range = IntStream.range(0, bands);
+        if (parallelGeneration){
+            range = range.parallel(); // runs on the common fork-join pool
+        }
+        range.forEach(action);
     }
 
-    private Color[][] addTrees(Color[][] colorMap){
-        for (int i = 0; i < treeGenerator.grid.length; i++){
-            if (treeGenerator.grid[i] != null){
-                try {
-                    boolean addTree = false;
-                    Color colorMapColor = colorMap[(int) Math.floor(treeGenerator.grid[i].x)][(int) Math.floor(treeGenerator.grid[i].y)];
-                    double r;
-                    Color treeColor = normalTree;
-
-                    if (colorMapColor.equals(beach)){
-                        r = 0.3d;
-
-                        if (random.nextDouble() <= r){
-                            addTree = true; // IDEA have diffrent tree colors for diffrent biomes (palm trees for example)
-                            treeColor = palmTree;
-                        }
-                    } else if (colorMapColor.equals(grasslands)){
-                        r = 0.3d;
-
-                        if (random.nextDouble() <= r){
-                            addTree = true;
-                            treeColor = normalTree;
-                        }
-                    } else if (colorMapColor.equals(tropicalSeasonedForest)){
-                        r = 0.6d;
-
-                        if (random.nextDouble() <= r){
-                            addTree = true;
-                            treeColor = normalTree;
-                        }
-                    } else if (colorMapColor.equals(tropicalRainForest)){
-                        r = 0.6d;
-
-                        if (random.nextDouble() <= r){
-                            addTree = true;
-                            treeColor = normalTree;
-                        }
-                    } else if (colorMapColor.equals(darkGrasslands)){
-                        r = 0.4d;
-                        if (random.nextDouble() <= r){
-                            addTree = true;
-                            treeColor = normalTree;
-                        }
-                    } else if (colorMapColor.equals(lightRocks)){
-                        r = 0.2d;
-                        if (random.nextDouble() <= r){
-                            addTree = true;
-                            treeColor = pineTree;
-                        }
-                    }
+    private FloatGrid generateMoisetureMap(int offsetX, int offsetY){
+        return generateNoiseMap(seed + 1, offsetX, offsetY);
+    }
 
-                    if (addTree) {
-                        if (realTrees){
-                            int tempX = (int) Math.floor(treeGenerator.grid[i].x);
-                            int tempY = (int) Math.floor(treeGenerator.grid[i].y);
+    private byte[] generateTiles(){
+        byte[] tMap = new byte[mapSize * mapSize];
+
+        for (int y = 0; y < mapSize; y++){
+            for (int x = 0; x < mapSize; x++){
+                int i = y * mapSize + x;
 
-                            colorMap[tempX][tempY] = treeColor.darker();
-                            colorMap[tempX + 1][tempY] = treeColor;
-                            colorMap[tempX - 1][tempY] = treeColor;
-                            colorMap[tempX][tempY + 1] = treeTrunk;
-                            colorMap[tempX][tempY - 1] = treeColor;
+                // the falloff only changes the biome, heightMap keeps the plain noise
+                float height = heightMap.get(i);
+                if (useFalloffMap){
+                    height = (float) clamp01(height - falloff.falloffAt(x, y));
+                }
 
-                        } else {
-                            colorMap[(int) Math.floor(treeGenerator.grid[i].x)][(int) Math.floor(treeGenerator.grid[i].y)] = new Color(0, 0, 0);
-                        }
-                    }
-                } catch (IndexOutOfBoundsException ignored){
+                tMap[i] = biomes.classify(height, moistureMap.get(i));
+            }
+        }
+        trees = new TreeIndex(mapSize, mapSize, TREE_CELL_SIZE);
+        addTrees(tMap, mapSize, treeGenerator, seed, trees, 0, 0, Set.of(), parallelGeneration); // nothing is cut in a whole map
+
+        return tMap;
+    }
+
+    /**
+     * Places trees on the points of treeGenerator where the biome allows them and adds them to index.
+     * Every point rolls its own number from (treeSeed, its cell), so the trees don't depend on the order the points
+     * are visited in, and with parallel the rows of points are split across all cores. That is safe because points
+     * are at least 5 apart and a tree only covers the tiles next to its point, so no two trees touch the same tile.
+     * Points in cut, as world tiles with tMap's top left at (originX, originY), get no tree.
+     */
+    private void addTrees(byte[] tMap, int width, PoissonDiskGenerator treeGenerator, long treeSeed, TreeIndex index, int originX, int originY, Set<Long> cut, boolean parallel){
+        int height = tMap.length / width;
+        byte[] placed = new byte[treeGenerator.getCellCount()]; // the tree on each point, 0 for none
+
+        IntStream rows = IntStream.range(0, treeGenerator.amount);
+        if (parallel){
+            rows = rows.parallel();
+        }
+        rows.forEach(row -> {
+            for (int i = row * treeGenerator.amount; i < (row + 1) * treeGenerator.amount; i++){
+                if (!treeGenerator.hasPoint(i)){
+                    continue;
+                }
 
+                int treeX = (int) Math.floor(treeGenerator.pointX[i]);
+                int treeY = (int) Math.floor(treeGenerator.pointY[i]);
+                if (treeX >= width || treeY >= height || cut.contains(treeKey(originX + treeX, originY + treeY))){
+                    continue;
+                }
+
+                byte tree = treeFor(tMap[treeY * width + treeX], roll(treeSeed, i));
+                if (tree == 0){
+                    continue;
+                }
+                placed[i] = tree;
+
+                if (realTrees){
+                    // the parts of a tree that hang over the edge of the map (or chunk) are left out, a tree
+                    // belongs to the chunk its point is in
+                    setTile(tMap, width, height, treeX, treeY, Tiles.treeCenter(tree));
+                    setTile(tMap, width, height, treeX + 1, treeY, tree);
+                    setTile(tMap, width, height, treeX - 1, treeY, tree);
+                    setTile(tMap, width, height, treeX, treeY + 1, Tiles.TREE_TRUNK);
+                    setTile(tMap, width, height, treeX, treeY - 1, tree);
+
+                } else {
+                    tMap[treeY * width + treeX] = Tiles.TREE_MARKER;
                 }
             }
+        });
+
+        // in cell order, so the tree ids are the same however the points were split up
+        for (int i = 0; i < placed.length; i++){
+            if (placed[i] != 0){
+                index.add((int) Math.floor(treeGenerator.pointX[i]), (int) Math.floor(treeGenerator.pointY[i]), placed[i]);
+            }
+        }
+    }
+
+    // the tree that grows on a biome for a roll in [0, 1), 0 if none does
+    private static byte treeFor(byte biome, double roll){
+        if (biome == Tiles.BEACH){
+            return roll <= 0.3d ? Tiles.PALM_TREE : 0; // IDEA have diffrent tree colors for diffrent biomes (palm trees for example)
+        } else if (biome == Tiles.GRASSLANDS){
+            return roll <= 0.3d ? Tiles.NORMAL_TREE : 0;
+        } else if (biome == Tiles.TROPICAL_SEASONED_FOREST){
+            return roll <= 0.6d ? Tiles.NORMAL_TREE : 0;
+        } else if (biome == Tiles.TROPICAL_RAIN_FOREST){
+            return roll <= 0.6d ? Tiles.NORMAL_TREE : 0;
+        } else if (biome == Tiles.DARK_GRASSLANDS){
+            return roll <= 0.4d ? Tiles.NORMAL_TREE : 0;
+        } else if (biome == Tiles.LIGHT_ROCKS){
+            return roll <= 0.2d ? Tiles.PINE_TREE : 0;
         }
+        return 0;
+    }
+
+    // a number in [0, 1) that only depends on seed and index (SplitMix64 of the pair), so every point rolls on its own
+    private static double roll(long seed, int index){
+        long z = seed + (index + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    private static void setTile(byte[] tMap, int width, int height, int x, int y, byte tile){
+        if (x >= 0 && y >= 0 && x < width && y < height){
+            tMap[y * width + x] = tile;
+        }
+    }
 
-        return  colorMap;
+    // the Tiles id at (x, y), see Tiles for the palette
+    public byte getTile(int x, int y){
+        return tiles[y * mapSize + x];
     }
 
-    public Color[][] getColorMap(){
-        return mapColors;
+    public int getARGB(int x, int y){
+        return Tiles.argb(tiles[y * mapSize + x]);
     }
 
     private double inverseLerp(double min, double max, double value){
@@ -0,0 +1,67 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A small picture of the worldSize x worldSize world from (0, 0), kept in an image and copied from one level of the
+ * TerrainPyramid, where a pixel is already the average of 2^level x 2^level tiles. Only the pyramid tiles that were
+ * made again since the last frame are copied over, so once the world is made a frame costs a handful of lookups
+ * and a single drawImage.
+ */
+public class Minimap {
+    final TerrainPyramid pyramid;
+    final int level;
+    final int size; // width and height in pixels
+    final int tiles; // pyramid tiles to a side
+
+    BufferedImage image;
+    int[] pixels;
+    int[][] copied; // the pyramid tile last copied into each part of the image, row major
+
+    // picks the level that makes the minimap at most maxSize pixels wide
+    public Minimap(TerrainPyramid pyramid, int worldSize, int maxSize){
+        this.pyramid = pyramid;
+
+        int level = 0;
+        while (level < TerrainPyramid.MAX_LEVEL && (worldSize >> level) > maxSize){
+            level++;
+        }
+        this.level = level;
+        size = Math.max(1, worldSize >> level);
+        tiles = (size + Chunk.SIZE - 1) / Chunk.SIZE;
+
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        copied = new int[tiles * tiles][];
+    }
+
+    // copies the pyramid tiles that changed into the image. Tiles that aren't made yet are asked for and left as they are
+    public void update(){
+        for (int tileY = 0; tileY < tiles; tileY++){
+            for (int tileX = 0; tileX < tiles; tileX++){
+                int[] tile = pyramid.get(level, tileX, tileY);
+                if (tile == null || tile == copied[tileY * tiles + tileX]){
+                    continue;
+                }
+                copied[tileY * tiles + tileX] = tile;
+
+                int width = Math.min(Chunk.SIZE, size - tileX * Chunk.SIZE);
+                int height = Math.min(Chunk.SIZE, size - tileY * Chunk.SIZE);
+                for (int y = 0; y < height; y++){
+                    System.arraycopy(tile, y * Chunk.SIZE, pixels, (tileY * Chunk.SIZE + y) * size + tileX * Chunk.SIZE, width);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the minimap with its top left corner at (x, y), and an outline around the viewSize x viewSize tiles
+     * from (viewX, viewY) so the player can see where they are.
+     */
+    public void draw(Graphics2D graphics, int x, int y, double viewX, double viewY, double viewSize){
+        graphics.drawImage(image, x, y, null);
+
+        graphics.setColor(Color.WHITE);
+        graphics.drawRect(x + (int) (viewX / (1 << level)), y + (int) (viewY / (1 << level)), Math.max(1, (int) (viewSize / (1 << level))), Math.max(1, (int) (viewSize / (1 << level))));
+    }
+}
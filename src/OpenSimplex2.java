@@ -43,6 +43,9 @@ public class OpenSimplex2 {
     private static final float RSQUARED_3D = 0.6f;
     private static final float RSQUARED_4D = 0.6f;
 
+    private static final int ROW_BLOCK_2D = 256;
+    private static final ThreadLocal<RowScratch2D> ROW_SCRATCH_2D = ThreadLocal.withInitial(RowScratch2D::new);
+
 
     /*
      * Noise Evaluators
@@ -60,6 +63,48 @@ public class OpenSimplex2 {
         return noise2_UnskewedBase(seed, xs, ys);
     }
 
+    /**
+     * 2D Simplex noise, standard lattice orientation, for a whole row of points.
+     * out[offset + i] is exactly noise2(seed, x0 + i * dx, y) for i in [0, count).
+     */
+    public static void noise2Row(long seed, double x0, double dx, double y, float[] out, int offset, int count) {
+        RowScratch2D scratch = ROW_SCRATCH_2D.get();
+        int[] xsbs = scratch.xsb, ysbs = scratch.ysb;
+        float[] xis = scratch.xi, yis = scratch.yi;
+
+        for (int start = 0; start < count; start += ROW_BLOCK_2D) {
+            int n = Math.min(ROW_BLOCK_2D, count - start);
+
+            // Skew, floor and fractional part for the whole block.
+            // No hashing or table lookups in here, so C2 can unroll and vectorize it.
+            for (int i = 0; i < n; i++) {
+                double x = x0 + (start + i) * dx;
+                double s = SKEW_2D * (x + y);
+                double xs = x + s, ys = y + s;
+                int xsb = fastFloor(xs), ysb = fastFloor(ys);
+                xsbs[i] = xsb;
+                ysbs[i] = ysb;
+                xis[i] = (float)(xs - xsb);
+                yis[i] = (float)(ys - ysb);
+            }
+
+            // Gradient contributions, these need the hashed lookups.
+            for (int i = 0; i < n; i++) {
+                out[offset + start + i] = noise2_Lattice(seed, xsbs[i], ysbs[i], xis[i], yis[i]);
+            }
+        }
+    }
+
+    /**
+     * 2D Simplex noise, standard lattice orientation, for a width x height tile of points.
+     * out[offset + j * width + i] is exactly noise2(seed, x0 + i * dx, y0 + j * dy).
+     */
+    public static void noise2Tile(long seed, double x0, double dx, double y0, double dy, int width, int height, float[] out, int offset) {
+        for (int j = 0; j < height; j++) {
+            noise2Row(seed, x0, dx, y0 + j * dy, out, offset + j * width, width);
+        }
+    }
+
     /**
      * 2D Simplex noise, with Y pointing down the main diagonal.
      * Might be better for a 2D sandbox style game, where Y is vertical.
@@ -85,6 +130,14 @@ public class OpenSimplex2 {
         int xsb = fastFloor(xs), ysb = fastFloor(ys);
         float xi = (float)(xs - xsb), yi = (float)(ys - ysb);
 
+        return noise2_Lattice(seed, xsb, ysb, xi, yi);
+    }
+
+    /**
+     * 2D Simplex noise from a skewed base point and the offset inside its cell.
+     */
+    private static float noise2_Lattice(long seed, int xsb, int ysb, float xi, float yi) {
+
         // Prime pre-multiplication for hash.
         long xsbp = xsb * PRIME_X, ysbp = ysb * PRIME_Y;
 
@@ -479,6 +532,17 @@ public class OpenSimplex2 {
         return x < 0 ? (int)(x - 0.5) : (int)(x + 0.5);
     }
 
+    /*
+     * Per thread buffers for the row evaluators
+     */
+
+    private static final class RowScratch2D {
+        final int[] xsb = new int[ROW_BLOCK_2D];
+        final int[] ysb = new int[ROW_BLOCK_2D];
+        final float[] xi = new float[ROW_BLOCK_2D];
+        final float[] yi = new float[ROW_BLOCK_2D];
+    }
+
     /*
      * gradients
      */
@@ -1,18 +1,51 @@
-import java.util.*;
-import java.awt.geom.Point2D;
-import java.util.Random;
-
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Poisson disk sampling (Bridson): points spread over a size x size square, none closer than minDistance to another.
+ * Cells are minDistance / sqrt(2) wide so a cell holds at most one point, and the points are stored by cell in
+ * pointX and pointY (NaN for an empty cell). The same seed always gives the same points.
+ *
+ * The cost is in the candidates: every point tries k of them and is tried again until a round of k finds no room, about
+ * 4 million candidates and 18 million cell checks for a 1950 x 1950 square at a minDistance of 5, a few hundred ms.
+ * That can't get down to milliseconds without trying fewer candidates, which leaves gaps and so fewer trees, so the game
+ * doesn't sample whole maps. Chunks sample their own 64 x 64 tile through PoissonDiskTiles, which takes about 0.2 ms.
+ */
 public class PoissonDiskGenerator {
     double minDistance;
-    Point2D.Double[] grid;
-    List<Point2D.Double> activeGrid;
+    double[] pointX; // by cell, row * amount + col
+    double[] pointY;
+    int[] activeGrid; // cells (of the sampling grid, see the constructor) of the points that can still spawn new ones, the first activeCount are in use
+    int activeCount;
+    int count; // number of points
     double cellSize;
     int amount; // number of rows/columns
-    Random random;
+    SplittableRandom random; // unlike Random it isn't thread safe, so no atomic update on every number
 
     final double sqrt2 = 1.41421356237d; // the square root of 2
     final int k = 30; // number of samples to chose before rejection (normally 30)
 
+    // a candidate goes 2 to 3 times minDistance from its point (the square root keeps them evenly spread over that
+    // ring) in a random direction. Both come from tables rather than a square root and a rejection loop each time
+    static final int DIRECTION_BITS = 12;
+    static final int DIRECTIONS = 1 << DIRECTION_BITS;
+    static final int DISTANCE_BITS = 12;
+    static final double[] DIRECTION_X = new double[DIRECTIONS];
+    static final double[] DIRECTION_Y = new double[DIRECTIONS];
+    static final double[] DISTANCES = new double[1 << DISTANCE_BITS]; // in minDistances
+    static final int[] SCAN_ROWS = {0, -1, 1, -2, 2}; // the rows nearest the candidate first, they are the likeliest to be too close
+
+    static {
+        for (int i = 0; i < DIRECTIONS; i++){
+            double angle = 2 * Math.PI * (i + 0.5) / DIRECTIONS;
+            DIRECTION_X[i] = Math.cos(angle);
+            DIRECTION_Y[i] = Math.sin(angle);
+        }
+        for (int i = 0; i < DISTANCES.length; i++){
+            DISTANCES[i] = Math.sqrt(3 * (i + 0.5) / DISTANCES.length + 1) + 1;
+        }
+    }
+
 
 
     public PoissonDiskGenerator(double minDistance, int size, int seed){
@@ -20,76 +53,167 @@ public class PoissonDiskGenerator {
         this.minDistance = minDistance;
         cellSize = minDistance / sqrt2; // w
         amount = (int)Math.floor(size / cellSize);
-        activeGrid = new ArrayList<>();
 
-        grid = new Point2D.Double[amount * amount];
+        pointX = new double[amount * amount];
+        pointY = new double[amount * amount];
+        Arrays.fill(pointX, Double.NaN);
+        Arrays.fill(pointY, Double.NaN);
+        activeGrid = new int[amount * amount];
 
         // STEP 1
-        random = new Random(seed);
-        int x = random.nextInt(size);
-        int y = random.nextInt(size);
+        random = new SplittableRandom(seed);
+        if (amount == 0){
+            return;
+        }
 
+        // while sampling, the points are in a grid with two empty cells around it and x and y next to each other, so
+        // a neighbour scan reads one array and never has to be clamped. pointX and pointY are filled from it at the end
+        int stride = amount + 4;
+        double[] grid = new double[2 * stride * stride];
+        Arrays.fill(grid, Double.NaN);
 
-        int i = (int)Math.floor(x / cellSize);
-        int j = (int)Math.floor(y / cellSize);
-        grid[j * amount + i] = new Point2D.Double(x, y);
-        activeGrid.add(new Point2D.Double(x, y));
+        // somewhere inside the grid, which can be a little smaller than size
+        double x = random.nextDouble(amount * cellSize);
+        double y = random.nextDouble(amount * cellSize);
+        add(grid, stride, x, y);
 
         // STEP 2
-        while (activeGrid.size() > 0){
-            int index = random.nextInt(activeGrid.size());
-            Point2D.Double pos = activeGrid.get(index);
+        double minDistanceSquared = minDistance * minDistance;
+        double gridEnd = amount * cellSize;
+
+        while (activeCount > 0){
+            int index = random.nextInt(activeCount);
+            int active = activeGrid[index];
+            double posX = grid[2 * active];
+            double posY = grid[2 * active + 1];
             boolean found = false;
 
             for (int n = 0; n < k; n++) {
-                double angle = random.nextDouble(2 * Math.PI);
-
-                double offsetX = Math.cos(angle);
-                double offsetY = Math.sin(angle);
-
-                double magnitude =  (Math.sqrt(random.nextDouble(0,3) + 1) + 1) * minDistance; // random.nextDouble(minDistance, 2 * minDistance); // m.nextDouble(1) * (Math.pow(2*minDistance, 2) - Math.pow(minDistance, 2)) + Math.pow(minDistance, 2) );
-
-                offsetX *= magnitude;
-                offsetY *= magnitude;
-
-                Point2D.Double sample = new Point2D.Double(pos.x + offsetX, pos.y + offsetY);
-
-                int col = (int) Math.floor(sample.x / cellSize);
-                int row = (int) Math.floor(sample.y / cellSize);
-
-                if (col > -1 && row > -1 && col < amount && row < amount && grid[row * amount + col] == null) {
-                    boolean ok = true;
-                    for (int a = -2; a <= 2; a++) {
-                        for (int b = -2; b <= 2; b++) {
-                            Point2D.Double neighbor;
-                            try {
-                                neighbor = grid[(row + a) * amount + (col + b)];
-                            } catch (IndexOutOfBoundsException e){ // this is because it can check an index out of range like -2 or 2 higher then the length
-                                neighbor = null;
-                            }
-
-                            if (neighbor != null) {
-                                double distanceSquared = Point2D.distanceSq(sample.x, sample.y, neighbor.x, neighbor.y);
-
-                                if (distanceSquared < minDistance * minDistance) {
-                                    ok = false;
-                                }
-                            }
-                        }
-                    }
-
-                    if (ok) {
-                        found = true;
-                        grid[row * amount + col] = sample;
-                        activeGrid.add(sample);
-                    }
+                // one number picks both the direction and the distance from the tables
+                int bits = random.nextInt();
+                int direction = bits & (DIRECTIONS - 1);
+                double distance = DISTANCES[bits >>> (32 - DISTANCE_BITS)] * minDistance;
+                double sampleX = posX + DIRECTION_X[direction] * distance;
+                double sampleY = posY + DIRECTION_Y[direction] * distance;
+
+                if (sampleX < 0 || sampleY < 0 || sampleX >= gridEnd || sampleY >= gridEnd){
+                    continue;
+                }
+
+                int col = Math.min((int) (sampleX / cellSize), amount - 1);
+                int row = Math.min((int) (sampleY / cellSize), amount - 1);
+                int cell = (row + 2) * stride + col + 2;
+
+                // a cell holds one point at most, so a taken one needs no scan
+                if (Double.isNaN(grid[2 * cell]) && !tooClose(grid, stride, cell, sampleX, sampleY, minDistanceSquared)) {
+                    found = true;
+                    add(grid, stride, sampleX, sampleY);
                 }
             }
 
             if (!found){
-                activeGrid.remove(index);
+                activeGrid[index] = activeGrid[--activeCount]; // order doesn't matter, so swap the last one in
+            }
+        }
+
+        for (int row = 0; row < amount; row++){
+            for (int col = 0; col < amount; col++){
+                int cell = (row + 2) * stride + col + 2;
+                pointX[row * amount + col] = grid[2 * cell];
+                pointY[row * amount + col] = grid[2 * cell + 1];
+            }
+        }
+    }
+
+    /**
+     * True if a point in the 5x5 cells around cell of the sampling grid is closer than minDistance to (x, y). The
+     * four corner cells are left out, a point in one of them is always more than a cell's diagonal (minDistance) away.
+     */
+    private static boolean tooClose(double[] grid, int stride, int cell, double x, double y, double minDistanceSquared){
+        for (int i = 0; i < 5; i++){
+            int row = SCAN_ROWS[i];
+            int reach = row == -2 || row == 2 ? 1 : 2;
+            int center = cell + row * stride;
+            for (int c = center - reach; c <= center + reach; c++){
+                double dx = grid[2 * c] - x;
+                double dy = grid[2 * c + 1] - y;
+
+                if (dx * dx + dy * dy < minDistanceSquared) { // false for empty cells, NaN never compares
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void add(double[] grid, int stride, double x, double y){
+        int cell = (Math.min((int) (y / cellSize), amount - 1) + 2) * stride + Math.min((int) (x / cellSize), amount - 1) + 2;
+        grid[2 * cell] = x;
+        grid[2 * cell + 1] = y;
+        activeGrid[activeCount++] = cell;
+        count++;
+    }
+
+    private PoissonDiskGenerator(PoissonDiskGenerator other){
+        minDistance = other.minDistance;
+        pointX = other.pointX.clone();
+        pointY = other.pointY.clone();
+        activeGrid = other.activeGrid.clone();
+        activeCount = other.activeCount;
+        count = other.count;
+        cellSize = other.cellSize;
+        amount = other.amount;
+        // random is only used while sampling, which is over
+    }
+
+    // the same points, which can be removed from without changing these
+    public PoissonDiskGenerator copy(){
+        return new PoissonDiskGenerator(this);
+    }
+
+    // true if a point in the 5x5 cells around (col, row) is closer than minDistance to (x, y)
+    private boolean hasNeighbour(double x, double y, int col, int row, double minDistanceSquared){
+        int startCol = Math.max(0, col - 2);
+        int endCol = Math.min(amount - 1, col + 2);
+        int startRow = Math.max(0, row - 2);
+        int endRow = Math.min(amount - 1, row + 2);
+
+        for (int r = startRow; r <= endRow; r++) {
+            for (int c = startCol; c <= endCol; c++) {
+                int cell = r * amount + c;
+                double dx = pointX[cell] - x;
+                double dy = pointY[cell] - y;
+
+                if (dx * dx + dy * dy < minDistanceSquared) { // false for empty cells, NaN never compares
+                    return true;
+                }
             }
         }
+        return false;
+    }
+
+    // true if a point is closer than minDistance to (x, y). (x, y) can be outside the square
+    public boolean hasPointNear(double x, double y){
+        return hasNeighbour(x, y, (int) Math.floor(x / cellSize), (int) Math.floor(y / cellSize), minDistance * minDistance);
+    }
+
+    public void remove(int cell){
+        if (hasPoint(cell)){
+            pointX[cell] = Double.NaN;
+            pointY[cell] = Double.NaN;
+            count--;
+        }
+    }
+
+    public boolean hasPoint(int cell){
+        return !Double.isNaN(pointX[cell]);
+    }
+
+    public int getCellCount(){
+        return pointX.length;
+    }
 
+    public int getCount(){
+        return count;
     }
 }
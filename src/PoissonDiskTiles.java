@@ -0,0 +1,143 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Poisson disk points for a world without edges, one tileSize x tileSize tile at a time. Each tile is sampled on its
+ * own from (seed, tileX, tileY), then a point is dropped if it is closer than minDistance to a point of a neighbouring
+ * tile that outranks its tile. Of two points too close across a border the lower ranked tile always gives its point
+ * up, so any set of tiles keeps the minimum distance, no matter which tiles are generated, in what order or on which
+ * thread. The price is a slightly thinner strip along some borders.
+ *
+ * A chunk's trees need the tiles of its eight neighbours too, and each tile needs the samples of the neighbours that
+ * outrank it, so the last CACHED samples and tiles are kept rather than sampled again for every chunk around them.
+ */
+public class PoissonDiskTiles {
+    final double minDistance;
+    final int tileSize;
+    final long seed;
+
+    static final int CACHED = 256; // samples and tiles kept each, a few screens of chunks
+
+    private final Map<Long, PoissonDiskGenerator> samples = lruMap();
+    private final Map<Long, PoissonDiskGenerator> tiles = lruMap(); // with the points dropped for their neighbours
+
+    public PoissonDiskTiles(double minDistance, int tileSize, long seed){
+        if (tileSize < minDistance){
+            throw new IllegalArgumentException("tileSize " + tileSize + " is smaller than minDistance " + minDistance + ", points could clash with tiles past the neighbours");
+        }
+        this.minDistance = minDistance;
+        this.tileSize = tileSize;
+        this.seed = seed;
+    }
+
+    /**
+     * The points of tile (tileX, tileY), relative to its top left corner (tileX * tileSize, tileY * tileSize).
+     * Safe to call from many threads at once. The result is shared with other callers, so don't change it.
+     */
+    public PoissonDiskGenerator tile(int tileX, int tileY){
+        long key = key(tileX, tileY);
+        synchronized (tiles){
+            PoissonDiskGenerator cached = tiles.get(key);
+            if (cached != null){
+                return cached;
+            }
+        }
+
+        // two threads can make the same tile at once, they get the same points so it doesn't matter which is kept
+        PoissonDiskGenerator points = sample(tileX, tileY).copy();
+
+        for (int dy = -1; dy <= 1; dy++){
+            for (int dx = -1; dx <= 1; dx++){
+                if ((dx == 0 && dy == 0) || !outranks(tileX + dx, tileY + dy, tileX, tileY)){
+                    continue;
+                }
+
+                PoissonDiskGenerator neighbour = null; // only sampled if a point is close enough to its side to matter
+                for (int cell = 0; cell < points.getCellCount(); cell++){
+                    if (!points.hasPoint(cell)){
+                        continue;
+                    }
+
+                    double x = points.pointX[cell];
+                    double y = points.pointY[cell];
+                    if (!nearSide(x, dx) || !nearSide(y, dy)){
+                        continue;
+                    }
+
+                    if (neighbour == null){
+                        neighbour = sample(tileX + dx, tileY + dy);
+                    }
+                    if (neighbour.hasPointNear(x - dx * tileSize, y - dy * tileSize)){
+                        points.remove(cell);
+                    }
+                }
+            }
+        }
+
+        synchronized (tiles){
+            tiles.put(key, points);
+        }
+        return points;
+    }
+
+    // every point of the tile, before any are dropped for its neighbours
+    private PoissonDiskGenerator sample(int tileX, int tileY){
+        long key = key(tileX, tileY);
+        synchronized (samples){
+            PoissonDiskGenerator cached = samples.get(key);
+            if (cached != null){
+                return cached;
+            }
+        }
+
+        long hash = hash(tileX, tileY, 0x2545F4914F6CDD1DL);
+        PoissonDiskGenerator points = new PoissonDiskGenerator(minDistance, tileSize, (int) (hash ^ (hash >>> 32)));
+        synchronized (samples){
+            samples.put(key, points);
+        }
+        return points;
+    }
+
+    // in least recently used order, dropping the eldest past CACHED
+    private static Map<Long, PoissonDiskGenerator> lruMap(){
+        return new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PoissonDiskGenerator> eldest){
+                return size() > CACHED;
+            }
+        };
+    }
+
+    private static long key(int tileX, int tileY){
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    // true if a point at coordinate value can be within minDistance of the neighbour in direction side (-1, 0 or 1)
+    private boolean nearSide(double value, int side){
+        if (side < 0){
+            return value < minDistance;
+        } else if (side > 0){
+            return value >= tileSize - minDistance;
+        }
+        return true;
+    }
+
+    // a fixed, seeded order of all tiles so that of two neighbours exactly one outranks the other
+    private boolean outranks(int tileX, int tileY, int otherX, int otherY){
+        long rank = hash(tileX, tileY, 0x9E3779B97F4A7C15L);
+        long otherRank = hash(otherX, otherY, 0x9E3779B97F4A7C15L);
+        if (rank != otherRank){
+            return rank > otherRank;
+        }
+        return tileX != otherX ? tileX > otherX : tileY > otherY;
+    }
+
+    private long hash(int tileX, int tileY, long salt){
+        long hash = (seed ^ salt) * 0xBF58476D1CE4E5B9L;
+        hash ^= tileX * 0x632BE59BD9B4E019L;
+        hash = (hash ^ (hash >>> 31)) * 0x94D049BB133111EBL;
+        hash ^= tileY * 0x85157AF5L;
+        hash = (hash ^ (hash >>> 29)) * 0xBF58476D1CE4E5B9L;
+        return hash ^ (hash >>> 32);
+    }
+}
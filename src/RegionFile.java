@@ -0,0 +1,329 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed storage for chunks, REGION_SIZE x REGION_SIZE chunks to a file (r.<regionX>.<regionY>.rdr). Every chunk
+ * is compressed on its own and the file starts with a table of where each one is, so reading a chunk is one seek and
+ * one inflate of that chunk only.
+ *
+ * A chunk is stored as, before deflating:
+ *   heights    SIZE * SIZE 16 bit values (height * 65535) as differences to a prediction from their neighbours,
+ *              high bytes first, then low bytes
+ *   moistures  the same
+ *   tiles      the tile ids as the difference to the tile above, run length encoded as (run length - 1, value) pairs
+ *   trees      short count, then per tree: byte x, byte y, byte Tiles id
+ * Tiles and trees come back exactly, heights and moistures to within 1 / 65535.
+ *
+ * File layout, little endian: int magic "RDRG", int version, int regionX, int regionY, int REGION_SIZE,
+ * int chunk size, then per chunk of the region in row major order int offset and int length (0 if the chunk isn't
+ * in the file), then the compressed chunks.
+ *
+ * The game itself doesn't read region files, it saves to a WorldFile. They are written by BatchGenerator, and open
+ * and readChunk are there for tools that read them back offline.
+ */
+public class RegionFile implements Closeable {
+    static final int MAGIC = 0x47524452; // "RDRG" read little endian
+    static final int VERSION = 1;
+    static final int REGION_SIZE = 16; // chunks per side, 1024 x 1024 tiles
+    static final int HEADER_BYTES = 24;
+    static final int TABLE_BYTES = REGION_SIZE * REGION_SIZE * 8;
+    static final int TILES = Chunk.SIZE * Chunk.SIZE;
+
+    final Path path;
+    final FileChannel channel; // open until close, readChunk reads at an offset so threads can share it
+    final int regionX;
+    final int regionY;
+    final int[] offsets;
+    final int[] lengths;
+
+    private RegionFile(Path path, FileChannel channel, ByteBuffer header) throws IOException {
+        this.path = path;
+        this.channel = channel;
+
+        if (header.getInt(0) != MAGIC){
+            throw new IOException(path + " is not a region file");
+        }
+        if (header.getInt(4) != VERSION){
+            throw new IOException(path + " is region file version " + header.getInt(4) + ", this game reads version " + VERSION);
+        }
+        if (header.getInt(16) != REGION_SIZE || header.getInt(20) != Chunk.SIZE){
+            throw new IOException(path + " has a different region or chunk size");
+        }
+
+        regionX = header.getInt(8);
+        regionY = header.getInt(12);
+        offsets = new int[REGION_SIZE * REGION_SIZE];
+        lengths = new int[REGION_SIZE * REGION_SIZE];
+        for (int i = 0; i < offsets.length; i++){
+            offsets[i] = header.getInt(HEADER_BYTES + i * 8);
+            lengths[i] = header.getInt(HEADER_BYTES + i * 8 + 4);
+        }
+    }
+
+    /**
+     * Reads the header and the table, the chunks are only read when asked for. The file stays open for them until
+     * close, and can't be saved over until then on Windows.
+     */
+    public static RegionFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + TABLE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) != -1){
+                // keep reading until the table is in
+            }
+            if (header.hasRemaining()){
+                throw new IOException(path + " is cut short");
+            }
+            return new RegionFile(path, channel, header);
+        } catch (IOException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static Path fileFor(Path directory, int regionX, int regionY){
+        return directory.resolve("r." + regionX + "." + regionY + ".rdr");
+    }
+
+    /**
+     * Writes the chunks into the region files of directory, one file per region they fall in. A region file is
+     * written whole, so the chunks passed in have to be every chunk that should be in it.
+     */
+    public static void save(Path directory, Collection<Chunk> chunks) throws IOException {
+        Map<Long, List<Chunk>> regions = new HashMap<>();
+        for (Chunk chunk : chunks){
+            long key = ((long) Math.floorDiv(chunk.chunkX, REGION_SIZE) << 32) | (Math.floorDiv(chunk.chunkY, REGION_SIZE) & 0xFFFFFFFFL);
+            regions.computeIfAbsent(key, k -> new ArrayList<>()).add(chunk);
+        }
+
+        Files.createDirectories(directory);
+        for (Map.Entry<Long, List<Chunk>> region : regions.entrySet()){
+            writeRegion(directory, (int) (region.getKey() >> 32), (int) (long) region.getKey(), region.getValue());
+        }
+    }
+
+    private static void writeRegion(Path directory, int regionX, int regionY, List<Chunk> chunks) throws IOException {
+        byte[][] encoded = new byte[REGION_SIZE * REGION_SIZE][];
+        int size = HEADER_BYTES + TABLE_BYTES;
+        for (Chunk chunk : chunks){
+            int index = index(chunk.chunkX, chunk.chunkY);
+            encoded[index] = encode(chunk);
+            size += encoded[index].length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(regionX).putInt(regionY).putInt(REGION_SIZE).putInt(Chunk.SIZE);
+
+        int offset = HEADER_BYTES + TABLE_BYTES;
+        for (byte[] chunk : encoded){
+            out.putInt(chunk == null ? 0 : offset).putInt(chunk == null ? 0 : chunk.length);
+            offset += chunk == null ? 0 : chunk.length;
+        }
+        for (byte[] chunk : encoded){
+            if (chunk != null){
+                out.put(chunk);
+            }
+        }
+        out.flip();
+
+        // written next to the old file and moved over it, so a crash never leaves half a region behind
+        Path path = fileFor(directory, regionX, regionY);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            while (out.hasRemaining()){
+                channel.write(out);
+            }
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e){
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public boolean hasChunk(int chunkX, int chunkY){
+        return inRegion(chunkX, chunkY) && lengths[index(chunkX, chunkY)] != 0;
+    }
+
+    // the chunk, or null if it isn't in this file. Only its own bytes are read and inflated
+    public Chunk readChunk(int chunkX, int chunkY) throws IOException {
+        if (!hasChunk(chunkX, chunkY)){
+            return null;
+        }
+
+        int index = index(chunkX, chunkY);
+        ByteBuffer compressed = ByteBuffer.allocate(lengths[index]);
+        long position = offsets[index];
+        while (compressed.hasRemaining()){
+            int read = channel.read(compressed, position + compressed.position());
+            if (read == -1){
+                throw new IOException(path + " is cut short");
+            }
+        }
+        return decode(chunkX, chunkY, compressed.array());
+    }
+
+    private boolean inRegion(int chunkX, int chunkY){
+        return Math.floorDiv(chunkX, REGION_SIZE) == regionX && Math.floorDiv(chunkY, REGION_SIZE) == regionY;
+    }
+
+    private static int index(int chunkX, int chunkY){
+        return Math.floorMod(chunkY, REGION_SIZE) * REGION_SIZE + Math.floorMod(chunkX, REGION_SIZE);
+    }
+
+    // one chunk, compressed on its own. Public for the benchmarks
+    public static byte[] encode(Chunk chunk){
+        byte[] tiles = chunk.tiles; // read once, removing a tree swaps in a new array
+        int[] treeIds = new int[TILES];
+        int trees = chunk.trees.queryRect(0, 0, Chunk.SIZE - 1, Chunk.SIZE - 1, treeIds);
+
+        // the worst case for the tiles is a run per tile, two bytes each
+        ByteBuffer raw = ByteBuffer.allocate(2 * TILES * Short.BYTES + 2 * TILES + Short.BYTES + trees * 3).order(ByteOrder.LITTLE_ENDIAN);
+        putQuantized(raw, chunk.heightMap);
+        putQuantized(raw, chunk.moistureMap);
+
+        // difference to the tile above, most of it is 0 and comes out as a few long runs
+        int i = 0;
+        while (i < TILES){
+            byte value = tileDelta(tiles, i);
+            int run = 1;
+            while (i + run < TILES && run < 256 && tileDelta(tiles, i + run) == value){
+                run++;
+            }
+            raw.put((byte) (run - 1)).put(value);
+            i += run;
+        }
+
+        raw.putShort((short) trees);
+        for (int t = 0; t < trees; t++){
+            raw.put((byte) chunk.trees.getX(treeIds[t])).put((byte) chunk.trees.getY(treeIds[t])).put(chunk.trees.getType(treeIds[t]));
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED); // 4x faster than the default level for about 6% more bytes
+        deflater.setInput(raw.array(), 0, raw.position());
+        deflater.finish();
+
+        byte[] out = new byte[raw.position() + 64]; // deflate never grows data by more than a few bytes per 16KB block
+        int length = 0;
+        while (!deflater.finished()){
+            if (length == out.length){
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        deflater.end();
+
+        return Arrays.copyOf(out, length);
+    }
+
+    // the other half of encode. Public for the benchmarks
+    public static Chunk decode(int chunkX, int chunkY, byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+
+        byte[] bytes = new byte[2 * TILES * Short.BYTES + 2 * TILES + Short.BYTES + TILES * 3];
+        int length = 0;
+        try {
+            while (!inflater.finished()){
+                int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary() || length == bytes.length)){
+                    throw new IOException("chunk " + chunkX + ", " + chunkY + " is corrupt");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e){
+            throw new IOException("chunk " + chunkX + ", " + chunkY + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer raw = ByteBuffer.wrap(bytes, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        Chunk chunk = new Chunk(chunkX, chunkY);
+        getQuantized(raw, chunk.heightMap);
+        getQuantized(raw, chunk.moistureMap);
+
+        byte[] tiles = chunk.tiles;
+        int i = 0;
+        while (i < TILES){
+            int run = (raw.get() & 0xFF) + 1;
+            byte value = raw.get();
+            for (int end = i + run; i < end; i++){
+                tiles[i] = (byte) (value + (i >= Chunk.SIZE ? tiles[i - Chunk.SIZE] : 0));
+            }
+        }
+
+        int trees = raw.getShort();
+        for (int t = 0; t < trees; t++){
+            chunk.trees.add(raw.get(), raw.get(), raw.get());
+        }
+
+        return chunk;
+    }
+
+    private static byte tileDelta(byte[] tiles, int i){
+        return (byte) (tiles[i] - (i >= Chunk.SIZE ? tiles[i - Chunk.SIZE] : 0));
+    }
+
+    /**
+     * 0 to 1 as 0 to 65535, each stored as the difference to what its left, upper and upper left neighbours predict
+     * (left + above - above left), which is close on smooth noise. The high bytes go first and the low bytes after
+     * them, so the mostly 0 high bytes sit together where deflate can find them.
+     */
+    private static void putQuantized(ByteBuffer raw, FloatGrid grid){
+        int[] values = new int[TILES];
+        for (int i = 0; i < TILES; i++){
+            values[i] = Math.round(Math.min(1, Math.max(0, grid.get(i))) * 65535);
+        }
+
+        int start = raw.position();
+        for (int i = 0; i < TILES; i++){
+            int delta = values[i] - predict(values, i);
+            raw.put(start + i, (byte) (delta >> 8));
+            raw.put(start + TILES + i, (byte) delta);
+        }
+        raw.position(start + 2 * TILES);
+    }
+
+    private static void getQuantized(ByteBuffer raw, FloatGrid grid){
+        int[] values = new int[TILES];
+        int start = raw.position();
+        for (int i = 0; i < TILES; i++){
+            int delta = (raw.get(start + i) & 0xFF) << 8 | (raw.get(start + TILES + i) & 0xFF);
+            values[i] = (predict(values, i) + delta) & 0xFFFF;
+            grid.set(i, values[i] / 65535f);
+        }
+        raw.position(start + 2 * TILES);
+    }
+
+    private static int predict(int[] values, int i){
+        int x = i % Chunk.SIZE;
+        if (i < Chunk.SIZE){
+            return x == 0 ? 0 : values[i - 1];
+        } else if (x == 0){
+            return values[i - Chunk.SIZE];
+        }
+        return values[i - 1] + values[i - Chunk.SIZE] - values[i - Chunk.SIZE - 1];
+    }
+}
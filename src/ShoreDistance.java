@@ -0,0 +1,104 @@
+/**
+ * How far every tile is from the shore, as one signed byte per tile: land is 1 next to the water and counts up
+ * inland, water is -1 next to land and counts down out to sea, both stopping at MAX. Tiles that are still
+ * placeholders are 0 and count as neither, so they don't make a shore that isn't there.
+ *
+ * Worked out with the exact Euclidean distance transform of Felzenszwalb and Huttenlocher, which is linear in the
+ * number of tiles: each column finds the nearest shore above and below, then each row takes the lower envelope of
+ * the parabolas that makes. It runs on one thread, TerrainBaker already bakes several chunks at once.
+ */
+public class ShoreDistance {
+    public static final int MAX = 8; // distances stop here, the tide and the coast only need the first few
+
+    // the distances of the tiles of a width x height map, row major
+    public static byte[] compute(byte[] tiles, int width, int height){
+        int[] toWater = squaredDistances(tiles, width, height, true);
+        int[] toLand = squaredDistances(tiles, width, height, false);
+
+        byte[] distances = new byte[width * height];
+        for (int i = 0; i < distances.length; i++){
+            byte tile = tiles[i];
+            if (tile == Tiles.PLACEHOLDER){
+                continue;
+            }
+            distances[i] = isWater(tile) ? (byte) -distance(toLand[i]) : (byte) distance(toWater[i]);
+        }
+        return distances;
+    }
+
+    public static boolean isWater(byte tile){
+        return tile == Tiles.OCEAN || tile == Tiles.DEEP_OCEAN || tile == Tiles.SUPER_DEEP_OCEAN;
+    }
+
+    private static int distance(int squared){
+        return squared >= MAX * MAX ? MAX : Math.max(1, (int) Math.round(Math.sqrt(squared)));
+    }
+
+    // the squared distance from every tile to the nearest water tile (or land tile), MAX * MAX or more if it is at least MAX away
+    private static int[] squaredDistances(byte[] tiles, int width, int height, boolean water){
+        int far = MAX; // further up or down the column than this doesn't matter, the distance is at least MAX anyway
+        int[] columns = new int[width * height];
+
+        // how far up or down the column the nearest one is. Swept a row at a time, which reads memory in order
+        // instead of jumping a whole row for every tile
+        for (int y = 0; y < height; y++){
+            int row = y * width;
+            for (int x = 0; x < width; x++){
+                columns[row + x] = isFeature(tiles[row + x], water) ? 0 : y == 0 ? far : Math.min(far, columns[row - width + x] + 1);
+            }
+        }
+        for (int y = height - 2; y >= 0; y--){
+            int row = y * width;
+            for (int x = 0; x < width; x++){
+                columns[row + x] = Math.min(columns[row + x], columns[row + width + x] + 1);
+            }
+        }
+
+        // along each row the nearest one is at the bottom of the lowest parabola (x - q)^2 + columns[q]^2
+        int[] squared = new int[width * height];
+        int[] parabolas = new int[width]; // the q of the parabolas in the envelope, left to right
+        double[] bounds = new double[width + 1]; // where each of them starts being the lowest
+        for (int y = 0; y < height; y++){
+            int row = y * width;
+            int count = 0;
+
+            parabolas[0] = 0;
+            bounds[0] = Double.NEGATIVE_INFINITY;
+            bounds[1] = Double.POSITIVE_INFINITY;
+            for (int q = 1; q < width; q++){
+                double start = intersection(columns, row, parabolas[count], q);
+                while (start <= bounds[count]){
+                    count--;
+                    start = intersection(columns, row, parabolas[count], q);
+                }
+                count++;
+                parabolas[count] = q;
+                bounds[count] = start;
+                bounds[count + 1] = Double.POSITIVE_INFINITY;
+            }
+
+            int k = 0;
+            for (int x = 0; x < width; x++){
+                while (bounds[k + 1] < x){
+                    k++;
+                }
+                int dx = x - parabolas[k];
+                int dy = columns[row + parabolas[k]];
+                squared[row + x] = dx * dx + dy * dy;
+            }
+        }
+
+        return squared;
+    }
+
+    // where the parabola of q starts being lower than the one of p, p < q
+    private static double intersection(int[] columns, int row, int p, int q){
+        double fp = (double) columns[row + p] * columns[row + p];
+        double fq = (double) columns[row + q] * columns[row + q];
+        return ((fq + (double) q * q) - (fp + (double) p * p)) / (2d * (q - p));
+    }
+
+    private static boolean isFeature(byte tile, boolean water){
+        return tile != Tiles.PLACEHOLDER && isWater(tile) == water;
+    }
+}
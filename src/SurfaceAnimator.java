@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+/**
+ * Moving water and drifting cloud shadows over the view, both from OpenSimplex2.noise3_ImproveXY with time as the
+ * third axis. Sampling every visible tile every frame would cost more the more water is on screen, so each tile is
+ * only sampled once every `period` frames, a different 1/period of the tiles each frame, and is faded between its
+ * last two samples in between. New tiles scrolling into view are sampled right away, which only scales with the edge.
+ *
+ * The state of a tile lives in a slot picked by its position modulo the view size, so every visible tile has its own
+ * slot however the camera moves. The shade a tile was last drawn with is kept too, the GamePanel only redraws the tiles
+ * whose shade changed.
+ */
+public class SurfaceAnimator {
+    static final int LEVELS = 64; // steps of brightness, a tile is only redrawn when it moves to another one
+    static final double CLOUD_SCALE = 0.015; // clouds are ~60 tiles across
+    static final double CLOUD_SPEED = 2; // tiles per second, to the right
+    static final double CLOUD_CHANGE = 0.03; // how fast clouds change shape
+    static final float CLOUD_DARKNESS = 0.3f;
+    static final double WATER_SCALE = 0.2;
+    static final double WATER_CHANGE = 0.4;
+    static final float WATER_BRIGHTNESS = 0.12f; // water gets up to this much lighter or darker
+
+    static final int WATER = Tiles.argb(Tiles.OCEAN);
+    static final int DEEP_WATER = Tiles.argb(Tiles.DEEP_OCEAN);
+
+    final long seed;
+    final int size; // width and height of the view in tiles
+    final int period; // frames between two samples of the same tile
+    final double frameTime; // seconds per frame
+
+    // by slot, row * size + column
+    int[] tileX; // the tile in the slot, Integer.MIN_VALUE before the first one
+    int[] tileY;
+    float[] cloudFrom; // the last sample and the next one, which is taken ahead of time
+    float[] cloudTo;
+    float[] waterFrom;
+    float[] waterTo;
+    byte[] landLevel; // this frame's brightness in 1 / LEVELS, LEVELS leaves the color as it is
+    byte[] waterLevel;
+    byte[] drawn; // the level the tile was last drawn with, -1 if it wasn't
+
+    // the view of the last advance, and the slot of its top left tile
+    int viewX;
+    int viewY;
+    int firstColumn;
+    int firstRow;
+
+    long frame;
+    int samples; // noise samples taken in the last frame
+
+    public SurfaceAnimator(long seed, int size, int period, int fps){
+        this.seed = seed;
+        this.size = size;
+        this.period = period;
+        this.frameTime = 1d / fps;
+
+        tileX = new int[size * size];
+        tileY = new int[size * size];
+        Arrays.fill(tileX, Integer.MIN_VALUE);
+        cloudFrom = new float[size * size];
+        cloudTo = new float[size * size];
+        waterFrom = new float[size * size];
+        waterTo = new float[size * size];
+        landLevel = new byte[size * size];
+        waterLevel = new byte[size * size];
+        drawn = new byte[size * size];
+    }
+
+    // moves on a frame, for the size x size tiles from (viewX, viewY). Call once a frame before drawing
+    public void advance(int viewX, int viewY){
+        frame++;
+        samples = 0;
+        this.viewX = viewX;
+        this.viewY = viewY;
+        firstColumn = Math.floorMod(viewX, size);
+        firstRow = Math.floorMod(viewY, size);
+
+        // a tile is sampled when frame - (7x + 13y) is a multiple of period, so neighbours are sampled on different frames
+        int frameInPeriod = (int) Math.floorMod(frame, (long) period);
+
+        for (int y = viewY; y < viewY + size; y++){
+            int sinceSample = Math.floorMod(frameInPeriod - viewX * 7 - y * 13, period);
+            for (int x = viewX; x < viewX + size; x++){
+                int slot = slot(x, y);
+
+                if (tileX[slot] != x || tileY[slot] != y){
+                    // a tile that just came into view gets the samples it would have had
+                    tileX[slot] = x;
+                    tileY[slot] = y;
+                    drawn[slot] = -1;
+                    long last = frame - sinceSample;
+                    cloudFrom[slot] = cloudAt(x, y, last);
+                    waterFrom[slot] = waterAt(x, y, last);
+                    cloudTo[slot] = cloudAt(x, y, last + period);
+                    waterTo[slot] = waterAt(x, y, last + period);
+                    samples += 4;
+                } else if (sinceSample == 0){
+                    cloudFrom[slot] = cloudTo[slot];
+                    waterFrom[slot] = waterTo[slot];
+                    cloudTo[slot] = cloudAt(x, y, frame + period);
+                    waterTo[slot] = waterAt(x, y, frame + period);
+                    samples += 2;
+                }
+
+                float t = sinceSample / (float) period;
+                float cloud = cloudFrom[slot] + (cloudTo[slot] - cloudFrom[slot]) * t;
+                float water = waterFrom[slot] + (waterTo[slot] - waterFrom[slot]) * t;
+                float land = 1 - CLOUD_DARKNESS * cloud;
+                landLevel[slot] = (byte) (land * LEVELS + 0.5f);
+                waterLevel[slot] = (byte) (land * (1 + WATER_BRIGHTNESS * water) * LEVELS + 0.5f);
+
+                sinceSample -= 7;
+                while (sinceSample < 0){
+                    sinceSample += period;
+                }
+            }
+        }
+    }
+
+    // true if the tile at (x, y), with the baked color, has to be drawn again this frame. (x, y) has to be in the view
+    public boolean changed(int color, int x, int y){
+        int slot = slot(x, y);
+        return drawn[slot] != level(color, slot);
+    }
+
+    // the color to draw the tile at (x, y) with this frame, and remembers it was drawn
+    public int draw(int color, int x, int y){
+        int slot = slot(x, y);
+        int level = level(color, slot);
+        drawn[slot] = (byte) level;
+
+        int red = Math.min(255, (color >> 16 & 0xFF) * level / LEVELS);
+        int green = Math.min(255, (color >> 8 & 0xFF) * level / LEVELS);
+        int blue = Math.min(255, (color & 0xFF) * level / LEVELS);
+        return 0xFF000000 | red << 16 | green << 8 | blue;
+    }
+
+    public int getSamples(){
+        return samples;
+    }
+
+    private byte level(int color, int slot){
+        return color == WATER || color == DEEP_WATER ? waterLevel[slot] : landLevel[slot];
+    }
+
+    // the same as floorMod(y, size) * size + floorMod(x, size) without dividing, for tiles in the view
+    private int slot(int x, int y){
+        int column = firstColumn + x - viewX;
+        int row = firstRow + y - viewY;
+        return (row >= size ? row - size : row) * size + (column >= size ? column - size : column);
+    }
+
+    // how much shadow is on the tile, 0 to 1
+    private float cloudAt(int x, int y, long frame){
+        double time = frame * frameTime;
+        float noise = OpenSimplex2.noise3_ImproveXY(seed, (x - time * CLOUD_SPEED) * CLOUD_SCALE, y * CLOUD_SCALE, time * CLOUD_CHANGE);
+        return Math.max(0, Math.min(1, (noise - 0.2f) / 0.4f)); // only the tops of the noise are clouds, with soft edges
+    }
+
+    // -1 to 1
+    private float waterAt(int x, int y, long frame){
+        double time = frame * frameTime;
+        return OpenSimplex2.noise3_ImproveXY(seed + 1, x * WATER_SCALE, y * WATER_SCALE, time * WATER_CHANGE);
+    }
+}
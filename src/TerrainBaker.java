@@ -0,0 +1,178 @@
+import java.awt.*;
+import java.util.Map;
+
+import static java.util.Map.entry;
+
+/**
+ * Bakes everything about a chunk that never changes after it is generated (biome colors, trees, elevation shadows and
+ * color averaging) into ready to draw ARGB layers, so a frame only has to copy them.
+ * A chunk gets one layer per tide level: 0 is low tide, 1 has the water one tile further up the shore, 2 two tiles.
+ * Where the water reaches there is foam, and the land just past it is wet. All of it comes from the chunk's
+ * ShoreDistance, so each is a compare per tile.
+ */
+public class TerrainBaker {
+    public static final int TIDE_LEVELS = 3;
+
+    final boolean averageColors;
+    final boolean tide; // water will go in and out
+    final boolean elevationShadows;
+
+    int[] elevation; // biomeHeights by tile id, -1 for tiles without a height
+
+    static final int WATER = Tiles.argb(Tiles.OCEAN);
+    static final int FOAM = new Color(160, 205, 208).getRGB();
+
+    static final Map<Integer, Integer> biomeHeights = Map.ofEntries(
+            entry(new Color(164,148,116).getRGB(), 0),
+            entry(new Color(112, 164, 79).getRGB(), 1),
+            entry(new Color(212,188,140).getRGB(), 1),
+            entry(new Color(96,146,94).getRGB(), 1),
+            entry(new Color(52,116,84).getRGB(), 1),
+            entry(new Color(172, 113, 74).getRGB(), 2),
+            entry(new Color(92, 135, 65).getRGB(), 2),
+            entry(new Color(146, 74, 54).getRGB(), 3),
+            entry(new Color(136,136,136).getRGB(), 3),
+            entry(new Color(58, 22, 14).getRGB(), 4),
+            entry(new Color(85,85,85).getRGB(), 4),
+            entry(new Color(217, 215, 199).getRGB(), 5)
+    );
+
+    public TerrainBaker(boolean averageColors, boolean tide, boolean elevationShadows){
+        this.averageColors = averageColors;
+        this.tide = tide;
+        this.elevationShadows = elevationShadows;
+
+        elevation = new int[Tiles.COUNT];
+        for (byte id = 0; id < Tiles.COUNT; id++){
+            elevation[id] = biomeHeights.getOrDefault(Tiles.argb(id), -1);
+        }
+    }
+
+    /**
+     * Bakes the center chunk of area, the chunk and its eight neighbours row major. Neighbours that haven't been
+     * generated yet are null and their tiles count as placeholders, the ChunkManager bakes a chunk again once they arrive.
+     * neighbours and stamp are only passed on to the result. The shore distances only pick the colors and aren't kept.
+     */
+    public BakedChunk bake(Chunk[] area, int neighbours, long stamp){
+        byte[] shore = shoreDistance(area);
+
+        int[][] layers = new int[TIDE_LEVELS][];
+        for (int level = 0; level < TIDE_LEVELS; level++){
+            if (level > 0 && !tide){
+                layers[level] = layers[0];
+                continue;
+            }
+
+            int[] layer = new int[Chunk.SIZE * Chunk.SIZE];
+            for (int y = 0; y < Chunk.SIZE; y++){
+                for (int x = 0; x < Chunk.SIZE; x++){
+                    layer[y * Chunk.SIZE + x] = tileColor(area, shore[y * Chunk.SIZE + x], x, y, level);
+                }
+            }
+            layers[level] = layer;
+        }
+
+        return new BakedChunk(layers, neighbours, stamp);
+    }
+
+    // the chunk's distances, from the chunk and a border of ShoreDistance.MAX tiles around it so the ones near the edge are right too
+    private static byte[] shoreDistance(Chunk[] area){
+        int margin = ShoreDistance.MAX;
+        int span = Chunk.SIZE + 2 * margin;
+
+        byte[] tiles = new byte[span * span];
+        for (int y = 0; y < span; y++){
+            for (int x = 0; x < span; x++){
+                tiles[y * span + x] = tileAt(area, x - margin, y - margin);
+            }
+        }
+        byte[] around = ShoreDistance.compute(tiles, span, span);
+
+        byte[] distances = new byte[Chunk.SIZE * Chunk.SIZE];
+        for (int y = 0; y < Chunk.SIZE; y++){
+            System.arraycopy(around, (y + margin) * span + margin, distances, y * Chunk.SIZE, Chunk.SIZE);
+        }
+        return distances;
+    }
+
+    // x and y are relative to the center chunk of the area and can reach one chunk past it on every side
+    private static byte tileAt(Chunk[] area, int x, int y){
+        int chunkX = Math.floorDiv(x, Chunk.SIZE);
+        int chunkY = Math.floorDiv(y, Chunk.SIZE);
+        Chunk chunk = area[(chunkY + 1) * 3 + chunkX + 1];
+
+        return chunk == null ? Tiles.PLACEHOLDER : chunk.getTile(x - chunkX * Chunk.SIZE, y - chunkY * Chunk.SIZE);
+    }
+
+    // the color of the tile at (x, y) with the tide, color averaging and shadows applied. shore is its ShoreDistance
+    private int tileColor(Chunk[] area, int shore, int x, int y, int tideLevel){
+        int color = averageColors ? averageColor(area, x, y) : Tiles.argb(tileAt(area, x, y));
+
+        if (tide){
+            // the water covers the land up to tideLevel tiles from the shore, with foam along its edge
+            if (tideLevel == 0 ? shore == -1 : shore == tideLevel){
+                return FOAM;
+            }
+            if (shore > 0 && shore < tideLevel){
+                return WATER;
+            }
+            if (shore == tideLevel + 1){
+                color = wet(color);
+            }
+        }
+
+        if (elevationShadows){
+            int height = elevation[tileAt(area, x, y)];
+            int below = elevation[tileAt(area, x, y + 1)];
+            int right = elevation[tileAt(area, x + 1, y)];
+
+            if (averageColors){
+                if (height != -1 && below != -1 && right != -1 && (height < below || height < right)){
+                    color = darker(color);
+                }
+            } else {
+                int left = elevation[tileAt(area, x - 1, y)];
+                int above = elevation[tileAt(area, x, y - 1)];
+
+                if (height != -1 && below != -1 && left != -1 && right != -1 && above != -1 && (height > below || height > left || height > right || height > above)){
+                    color = shadow(color);
+                }
+            }
+        }
+
+        return color;
+    }
+
+    // the root mean square of the four neighbours
+    private static int averageColor(Chunk[] area, int x, int y){
+        int left = Tiles.argb(tileAt(area, x - 1, y));
+        int right = Tiles.argb(tileAt(area, x + 1, y));
+        int above = Tiles.argb(tileAt(area, x, y - 1));
+        int below = Tiles.argb(tileAt(area, x, y + 1));
+
+        int R = (int) Math.round(Math.sqrt((square(left >> 16 & 0xFF) + square(right >> 16 & 0xFF) + square(above >> 16 & 0xFF) + square(below >> 16 & 0xFF)) / 4d));
+        int G = (int) Math.round(Math.sqrt((square(left >> 8 & 0xFF) + square(right >> 8 & 0xFF) + square(above >> 8 & 0xFF) + square(below >> 8 & 0xFF)) / 4d));
+        int B = (int) Math.round(Math.sqrt((square(left & 0xFF) + square(right & 0xFF) + square(above & 0xFF) + square(below & 0xFF)) / 4d));
+
+        return 0xFF000000 | R << 16 | G << 8 | B;
+    }
+
+    private static int square(int value){
+        return value * value;
+    }
+
+    // same as Color.darker()
+    private static int darker(int color){
+        return 0xFF000000 | (int) ((color >> 16 & 0xFF) * 0.7) << 16 | (int) ((color >> 8 & 0xFF) * 0.7) << 8 | (int) ((color & 0xFF) * 0.7);
+    }
+
+    // the color of the sand (or grass) just above the water
+    private static int wet(int color){
+        return 0xFF000000 | (int) ((color >> 16 & 0xFF) * 0.85) << 16 | (int) ((color >> 8 & 0xFF) * 0.85) << 8 | (int) ((color & 0xFF) * 0.85);
+    }
+
+    // same as drawing black at an alpha of 63 over the color
+    private static int shadow(int color){
+        return 0xFF000000 | ((color >> 16 & 0xFF) * 192 + 127) / 255 << 16 | ((color >> 8 & 0xFF) * 192 + 127) / 255 << 8 | ((color & 0xFF) * 192 + 127) / 255;
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Smaller and smaller copies of the world's colors for zooming out. Level 0 is the chunks' low tide layer, and a tile
+ * of level n is Chunk.SIZE x Chunk.SIZE pixels that each average 2 x 2 pixels of level n - 1, so it covers
+ * 2^n x 2^n chunks. However far out the view is, a frame only copies about as many pixels as at level 0.
+ *
+ * Tiles are only made when they are first asked for, on a pool of their own so several are made at once, and get
+ * asks for the four below them the same way. Until a tile is ready get returns null. A tile made while some of what is
+ * under it was still missing has those parts in the placeholder color and is made again the next time it is asked for.
+ *
+ * Zoomed all the way out the view covers thousands of chunks, far more than the ChunkManager keeps, so level 1 isn't
+ * made by reading chunks back out of it. Every chunk is shrunk into its quarter of a level 1 tile as soon as it is
+ * baked instead, and the chunk can be evicted right after without having to be generated again.
+ */
+public class TerrainPyramid {
+    public static final int MAX_LEVEL = 6; // a level 6 tile is 4096 x 4096 world tiles
+
+    static final int PLACEHOLDER = Tiles.argb(Tiles.PLACEHOLDER);
+
+    private static class Tile {
+        final int[] pixels;
+        final boolean complete; // false if part of it was made from tiles that weren't there yet
+        final int chunks; // level 1 only, which of its four chunks are in it, bit partY * 2 + partX
+
+        Tile(int[] pixels, boolean complete, int chunks){
+            this.pixels = pixels;
+            this.complete = complete;
+            this.chunks = chunks;
+        }
+    }
+
+    // the tiles of one level
+    private static class Level {
+        final Map<Long, Tile> tiles; // in least recently used order
+        final Set<Long> pending = new HashSet<>(); // queued or being built
+
+        Level(int maxTiles){
+            tiles = new LinkedHashMap<>(16, 0.75f, true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest){
+                    return size() > maxTiles;
+                }
+            };
+        }
+    }
+
+    final ChunkManager world;
+    final Level[] levels; // levels[0] is null, level 0 is left to the ChunkManager
+    ExecutorService workers;
+
+    /**
+     * Keeps enough of every level for a viewSize x viewSize view zoomed out by up to maxZoom levels, together with
+     * all of a worldSize x worldSize world from (0, 0) for the Minimap.
+     */
+    public TerrainPyramid(ChunkManager world, int viewSize, int maxZoom, int worldSize){
+        this.world = world;
+
+        levels = new Level[MAX_LEVEL + 1];
+        for (int level = 1; level <= MAX_LEVEL; level++){
+            levels[level] = new Level(tilesNeeded(level, viewSize, maxZoom, worldSize));
+        }
+        world.bakeListener = this::chunkBaked;
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // leave a core for the game loop
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "terrain-pyramid");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The pixels of tile (tileX, tileY) of level, row major, or null if it isn't made yet. Queues it if it isn't made
+     * yet or wasn't complete. Level 0 tiles are the chunks themselves.
+     */
+    public int[] get(int level, int tileX, int tileY){
+        if (level == 0){
+            Chunk chunk = world.getLoadedChunk(tileX, tileY);
+            if (chunk == null){
+                world.requestChunk(tileX, tileY);
+                return null;
+            }
+            return chunk.baked.layers[0];
+        }
+
+        long key = key(tileX, tileY);
+        Tile tile;
+        synchronized (this){
+            tile = levels[level].tiles.get(key);
+            if ((tile == null || !tile.complete) && levels[level].pending.add(key)){
+                workers.execute(() -> build(level, tileX, tileY, key));
+            }
+        }
+        return tile == null ? null : tile.pixels;
+    }
+
+    public synchronized int getTileCount(){
+        int count = 0;
+        for (int level = 1; level <= MAX_LEVEL; level++){
+            count += levels[level].tiles.size();
+        }
+        return count;
+    }
+
+    /**
+     * How many tiles of level there can be at once: the view zoomed out by maxZoom, where it needs the most of every
+     * level, plus the Minimap. A tile that is only partly in view is still made whole, from everything under it.
+     */
+    private static int tilesNeeded(int level, int viewSize, int maxZoom, int worldSize){
+        int top = viewSize / Chunk.SIZE + 2; // tiles of level maxZoom a side, the view doesn't line up with them
+        int view = level <= maxZoom ? top << (maxZoom - level) : (top >> (level - maxZoom)) + 1;
+        int tileSpan = Chunk.SIZE << level; // world tiles a side
+        int minimap = (worldSize + tileSpan - 1) / tileSpan;
+        return view * view + minimap * minimap;
+    }
+
+    // shrinks the chunk into its quarter of its level 1 tile, and has the tiles above that made again
+    private void chunkBaked(Chunk chunk){
+        int half = Chunk.SIZE / 2;
+        int[] layer = chunk.baked.layers[0];
+        int partX = chunk.chunkX & 1;
+        int partY = chunk.chunkY & 1;
+        long key = key(chunk.chunkX >> 1, chunk.chunkY >> 1);
+
+        synchronized (this){
+            Tile tile = levels[1].tiles.get(key);
+            int[] pixels;
+            if (tile == null){
+                pixels = new int[Chunk.SIZE * Chunk.SIZE];
+                Arrays.fill(pixels, PLACEHOLDER);
+            } else {
+                pixels = tile.pixels.clone(); // the old one may be being drawn
+            }
+
+            for (int y = 0; y < half; y++){
+                int row = (partY * half + y) * Chunk.SIZE + partX * half;
+                for (int x = 0; x < half; x++){
+                    int from = 2 * y * Chunk.SIZE + 2 * x;
+                    pixels[row + x] = average(layer[from], layer[from + 1], layer[from + Chunk.SIZE], layer[from + Chunk.SIZE + 1]);
+                }
+            }
+
+            int chunks = (tile == null ? 0 : tile.chunks) | 1 << (partY * 2 + partX);
+            levels[1].tiles.put(key, new Tile(pixels, chunks == 0b1111, chunks));
+
+            // a chunk is baked again when its neighbours arrive, so the tiles made from it before are out of date
+            for (int level = 2; level <= MAX_LEVEL; level++){
+                long above = key(chunk.chunkX >> level, chunk.chunkY >> level);
+                Tile aboveTile = levels[level].tiles.get(above);
+                if (aboveTile != null && aboveTile.complete){
+                    levels[level].tiles.put(above, new Tile(aboveTile.pixels, false, 0));
+                }
+            }
+        }
+    }
+
+    private void build(int level, int tileX, int tileY, long key){
+        if (level == 1){
+            fill(tileX, tileY);
+            synchronized (this){
+                levels[1].pending.remove(key);
+            }
+            return;
+        }
+
+        int[] pixels = new int[Chunk.SIZE * Chunk.SIZE];
+        boolean complete = true;
+        int half = Chunk.SIZE / 2;
+
+        // each of the four tiles below makes a quarter of this one
+        for (int part = 0; part < 4; part++){
+            int partX = part & 1;
+            int partY = part >> 1;
+            int[] below = get(level - 1, tileX * 2 + partX, tileY * 2 + partY);
+
+            for (int y = 0; y < half; y++){
+                int row = (partY * half + y) * Chunk.SIZE + partX * half;
+                if (below == null){
+                    Arrays.fill(pixels, row, row + half, PLACEHOLDER);
+                    continue;
+                }
+                for (int x = 0; x < half; x++){
+                    int from = 2 * y * Chunk.SIZE + 2 * x;
+                    pixels[row + x] = average(below[from], below[from + 1], below[from + Chunk.SIZE], below[from + Chunk.SIZE + 1]);
+                }
+            }
+
+            if (below == null || !isComplete(level - 1, tileX * 2 + partX, tileY * 2 + partY)){
+                complete = false;
+            }
+        }
+
+        synchronized (this){
+            levels[level].tiles.put(key, new Tile(pixels, complete, 0));
+            levels[level].pending.remove(key);
+        }
+    }
+
+    // adds the chunks of level 1 tile (tileX, tileY) that are loaded but missing from it, and asks for the rest
+    private void fill(int tileX, int tileY){
+        int chunks;
+        synchronized (this){
+            Tile tile = levels[1].tiles.get(key(tileX, tileY));
+            chunks = tile == null ? 0 : tile.chunks;
+        }
+
+        for (int part = 0; part < 4; part++){
+            if ((chunks & 1 << part) != 0){
+                continue;
+            }
+            int chunkX = tileX * 2 + (part & 1);
+            int chunkY = tileY * 2 + (part >> 1);
+            Chunk chunk = world.getLoadedChunk(chunkX, chunkY);
+            if (chunk != null){
+                chunkBaked(chunk);
+            } else {
+                world.requestChunk(chunkX, chunkY); // chunkBaked adds it once it is baked
+            }
+        }
+    }
+
+    private synchronized boolean isComplete(int level, int tileX, int tileY){
+        Tile tile = levels[level].tiles.get(key(tileX, tileY));
+        return tile != null && tile.complete;
+    }
+
+    private static long key(int x, int y){
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    // the mean of four colors, channel by channel
+    private static int average(int a, int b, int c, int d){
+        int red = ((a >> 16 & 0xFF) + (b >> 16 & 0xFF) + (c >> 16 & 0xFF) + (d >> 16 & 0xFF) + 2) >> 2;
+        int green = ((a >> 8 & 0xFF) + (b >> 8 & 0xFF) + (c >> 8 & 0xFF) + (d >> 8 & 0xFF) + 2) >> 2;
+        int blue = ((a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF) + 2) >> 2;
+        return 0xFF000000 | red << 16 | green << 8 | blue;
+    }
+}
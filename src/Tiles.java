@@ -0,0 +1,87 @@
+import java.awt.*;
+
+// Every tile of the map is stored as one of these ids, the colors live in the palette below
+public class Tiles {
+
+    // BIOMES
+    public static final byte SUPER_DEEP_OCEAN = 0;
+    public static final byte DEEP_OCEAN = 1;
+    public static final byte OCEAN = 2;
+    public static final byte BEACH = 3;
+    public static final byte DESERT = 4;
+    public static final byte GRASSLANDS = 5;
+    public static final byte TROPICAL_SEASONED_FOREST = 6;
+    public static final byte TROPICAL_RAIN_FOREST = 7;
+    public static final byte DARK_DESERT = 8;
+    public static final byte DARK_GRASSLANDS = 9;
+    public static final byte DRY_LIGHT_ROCKS = 10;
+    public static final byte LIGHT_ROCKS = 11;
+    public static final byte DRY_DARK_ROCKS = 12;
+    public static final byte DARK_ROCKS = 13;
+    public static final byte SNOW = 14;
+
+    // TREES
+    public static final byte PALM_TREE = 15;
+    public static final byte PALM_TREE_CENTER = 16;
+    public static final byte PINE_TREE = 17;
+    public static final byte PINE_TREE_CENTER = 18;
+    public static final byte NORMAL_TREE = 19;
+    public static final byte NORMAL_TREE_CENTER = 20;
+    public static final byte TREE_TRUNK = 21;
+    public static final byte TREE_MARKER = 22; // used when realTrees is off
+
+    public static final byte PLACEHOLDER = 23; // chunks that are still being generated
+
+    public static final int COUNT = 24;
+
+    private static final int[] ARGB = new int[COUNT];
+    private static final Color[] COLORS = new Color[COUNT];
+
+    static {
+        set(SUPER_DEEP_OCEAN, new Color(52, 123, 128)); // new Color(68,68,123);
+        set(DEEP_OCEAN, new Color(52, 123, 128));
+        set(OCEAN, new Color(65, 155, 161));
+        set(BEACH, new Color(164,148,116)); // new Color(254, 196, 119);
+        set(DESERT, new Color(212,188,140));
+        set(GRASSLANDS, new Color(112, 164, 79));
+        set(TROPICAL_SEASONED_FOREST, new Color(96,146,94));
+        set(TROPICAL_RAIN_FOREST, new Color(52,116,84));
+        set(DARK_DESERT, new Color(172, 113, 74));
+        set(DARK_GRASSLANDS, new Color(92, 135, 65));
+        set(DRY_LIGHT_ROCKS, new Color(146, 74, 54));
+        set(LIGHT_ROCKS, new Color(136,136,136));
+        set(DRY_DARK_ROCKS, new Color(58, 22, 14));
+        set(DARK_ROCKS, new Color(85,85,85));
+        set(SNOW, new Color(217, 215, 199));
+
+        set(PALM_TREE, new Color(111, 153, 64));
+        set(PALM_TREE_CENTER, new Color(111, 153, 64).darker());
+        set(PINE_TREE, new Color(42, 47, 35));
+        set(PINE_TREE_CENTER, new Color(42, 47, 35).darker());
+        set(NORMAL_TREE, new Color(34, 138, 11));
+        set(NORMAL_TREE_CENTER, new Color(34, 138, 11).darker());
+        set(TREE_TRUNK, new Color(92, 67, 34));
+        set(TREE_MARKER, new Color(0, 0, 0));
+
+        set(PLACEHOLDER, new Color(40, 40, 40));
+    }
+
+    private static void set(byte id, Color color){
+        COLORS[id] = color;
+        ARGB[id] = color.getRGB();
+    }
+
+    public static int argb(byte id){
+        return ARGB[id];
+    }
+
+    // shared instances, never allocate a Color per tile
+    public static Color color(byte id){
+        return COLORS[id];
+    }
+
+    // the darker center of a tree of the given color
+    public static byte treeCenter(byte tree){
+        return (byte) (tree + 1);
+    }
+}
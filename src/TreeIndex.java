@@ -0,0 +1,161 @@
+import java.util.Arrays;
+
+/**
+ * The trees of a chunk (or of a whole map), bucketed in a uniform grid of cellSize x cellSize cells so a query only
+ * looks at the cells it overlaps. Everything is in primitive arrays: each cell is a linked list of tree ids through
+ * head and next, and a tree is its id into treeX, treeY and treeType.
+ * Not thread safe. The generator fills it before the chunk is published, after that only the game thread changes it,
+ * and anything reading it on another thread (saving) locks on the index, as removing a tree does.
+ */
+public class TreeIndex {
+    final int width;
+    final int height;
+    final int cellSize;
+    final int columns;
+    final int rows;
+
+    int[] head; // the first tree of each cell, -1 if it has none
+    int[] next; // the next tree in the same cell, -1 at the end
+    int[] treeX;
+    int[] treeY;
+    byte[] treeType; // the Tiles id of the tree, e.g. Tiles.PALM_TREE
+    int size; // ids handed out so far, removed trees keep theirs
+    int count; // trees that haven't been removed
+
+    public TreeIndex(int width, int height, int cellSize){
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        columns = (width + cellSize - 1) / cellSize;
+        rows = (height + cellSize - 1) / cellSize;
+
+        head = new int[columns * rows];
+        Arrays.fill(head, -1);
+
+        next = new int[16];
+        treeX = new int[16];
+        treeY = new int[16];
+        treeType = new byte[16];
+    }
+
+    // adds a tree at tile (x, y), which has to be inside the index. Returns its id
+    public int add(int x, int y, byte type){
+        if (size == treeX.length){
+            next = Arrays.copyOf(next, size * 2);
+            treeX = Arrays.copyOf(treeX, size * 2);
+            treeY = Arrays.copyOf(treeY, size * 2);
+            treeType = Arrays.copyOf(treeType, size * 2);
+        }
+
+        int id = size++;
+        int cell = cell(x, y);
+        treeX[id] = x;
+        treeY[id] = y;
+        treeType[id] = type;
+        next[id] = head[cell];
+        head[cell] = id;
+        count++;
+        return id;
+    }
+
+    // takes the tree out of the index, e.g. when it is cut down. False if it was already gone
+    public boolean remove(int id){
+        int cell = cell(treeX[id], treeY[id]);
+
+        int previous = -1;
+        for (int tree = head[cell]; tree != -1; previous = tree, tree = next[tree]){
+            if (tree == id){
+                if (previous == -1){
+                    head[cell] = next[tree];
+                } else {
+                    next[previous] = next[tree];
+                }
+                count--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the id of the tree at tile (x, y), -1 if there is none
+    public int find(int x, int y){
+        if (x < 0 || y < 0 || x >= width || y >= height){
+            return -1;
+        }
+
+        for (int tree = head[cell(x, y)]; tree != -1; tree = next[tree]){
+            if (treeX[tree] == x && treeY[tree] == y){
+                return tree;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the ids of the trees with minX <= x <= maxX and minY <= y <= maxY into out and returns how many there were.
+     * Stops once out is full.
+     */
+    public int queryRect(int minX, int minY, int maxX, int maxY, int[] out){
+        return query(minX, minY, maxX, maxY, -1, 0, 0, out);
+    }
+
+    // like queryRect, for the trees no further than radius from (x, y)
+    public int queryRadius(double x, double y, double radius, int[] out){
+        return query((int) Math.floor(x - radius), (int) Math.floor(y - radius), (int) Math.ceil(x + radius), (int) Math.ceil(y + radius), radius * radius, x, y, out);
+    }
+
+    // the trees in the rectangle, and if radiusSquared isn't negative, within the circle around (centerX, centerY)
+    private int query(int minX, int minY, int maxX, int maxY, double radiusSquared, double centerX, double centerY, int[] out){
+        int startColumn = Math.max(0, Math.floorDiv(minX, cellSize));
+        int startRow = Math.max(0, Math.floorDiv(minY, cellSize));
+        int endColumn = Math.min(columns - 1, Math.floorDiv(maxX, cellSize));
+        int endRow = Math.min(rows - 1, Math.floorDiv(maxY, cellSize));
+
+        int found = 0;
+        for (int row = startRow; row <= endRow; row++){
+            for (int column = startColumn; column <= endColumn; column++){
+                for (int tree = head[row * columns + column]; tree != -1; tree = next[tree]){
+                    int x = treeX[tree];
+                    int y = treeY[tree];
+                    if (x < minX || y < minY || x > maxX || y > maxY){
+                        continue;
+                    }
+                    if (radiusSquared >= 0 && (x - centerX) * (x - centerX) + (y - centerY) * (y - centerY) > radiusSquared){
+                        continue;
+                    }
+
+                    if (found == out.length){
+                        return found;
+                    }
+                    out[found++] = tree;
+                }
+            }
+        }
+        return found;
+    }
+
+    private int cell(int x, int y){
+        return (y / cellSize) * columns + x / cellSize;
+    }
+
+    public int getX(int id){
+        return treeX[id];
+    }
+
+    public int getY(int id){
+        return treeY[id];
+    }
+
+    public byte getType(int id){
+        return treeType[id];
+    }
+
+    // the arrays behind the index, in bytes
+    public long getHeapBytes(){
+        return (long) head.length * Integer.BYTES + (long) treeX.length * (3 * Integer.BYTES + 1);
+    }
+
+    public int getCount(){
+        return count;
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A saved world: the generator settings and every chunk that was generated, in one binary file that is memory mapped
+ * when it is opened. Opening only reads the header and the chunk table, a chunk's pages are read in by the OS the
+ * first time the chunk is asked for, and its heights and moistures stay in the mapping instead of being copied.
+ *
+ * Layout, little endian:
+ *   header     int magic "RDWF", int version, int seed, int mapSize, int useFalloffMap (0 or 1), int chunk size,
+ *              int chunk count, int cut tree count
+ *   table      per chunk: int chunkX, int chunkY, long offset of its record
+ *   cut trees  per tree that was cut down: int worldX, int worldY of its point, see MapGenerator.cutTree
+ *   records    per chunk: float[SIZE * SIZE] heights, float[SIZE * SIZE] moistures, byte[SIZE * SIZE] tile ids,
+ *              int tree count, then per tree: byte x, byte y, byte Tiles id. Records start on 4 byte boundaries
+ * Version 1 is the same without cut trees, its count was always 0 so it is read as version 2.
+ */
+public class WorldFile {
+    static final int MAGIC = 0x46574452; // "RDWF" read little endian
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 32;
+    static final int TABLE_ENTRY_BYTES = 16;
+    static final int CUT_TREE_BYTES = 8;
+    static final int GRID_BYTES = Chunk.SIZE * Chunk.SIZE * Float.BYTES;
+
+    final int seed;
+    final int mapSize;
+    final boolean useFalloffMap;
+
+    MappedByteBuffer file;
+    Map<Long, Integer> offsets; // record offset by chunk key
+    Set<Long> cutTrees; // as MapGenerator.treeKey
+
+    private WorldFile(MappedByteBuffer file) throws IOException {
+        this.file = file;
+
+        if (file.limit() < HEADER_BYTES || file.getInt(0) != MAGIC){
+            throw new IOException("not a world file");
+        }
+        int version = file.getInt(4);
+        if (version != VERSION && version != 1){
+            throw new IOException("world file version " + version + ", this game reads version " + VERSION);
+        }
+        if (file.getInt(20) != Chunk.SIZE){
+            throw new IOException("world file chunks are " + file.getInt(20) + " tiles, this game uses " + Chunk.SIZE);
+        }
+
+        seed = file.getInt(8);
+        mapSize = file.getInt(12);
+        useFalloffMap = file.getInt(16) != 0;
+
+        int chunkCount = file.getInt(24);
+        offsets = new HashMap<>(chunkCount * 2);
+        for (int i = 0; i < chunkCount; i++){
+            int entry = HEADER_BYTES + i * TABLE_ENTRY_BYTES;
+            offsets.put(key(file.getInt(entry), file.getInt(entry + 4)), (int) file.getLong(entry + 8));
+        }
+
+        int cutCount = file.getInt(28);
+        cutTrees = new HashSet<>(cutCount * 2);
+        for (int i = 0; i < cutCount; i++){
+            int entry = HEADER_BYTES + chunkCount * TABLE_ENTRY_BYTES + i * CUT_TREE_BYTES;
+            cutTrees.add(MapGenerator.treeKey(file.getInt(entry), file.getInt(entry + 4)));
+        }
+    }
+
+    public static WorldFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            if (channel.size() > Integer.MAX_VALUE){
+                throw new IOException(path + " is over 2GB, too big to map in one piece");
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            return new WorldFile(file);
+        }
+    }
+
+    /**
+     * Writes the generator's settings and cut trees and the chunks to path. The file is written next to it first and then moved
+     * over it, so a crash halfway never leaves a broken save behind.
+     */
+    public static void save(Path path, MapGenerator generator, Collection<Chunk> chunks) throws IOException {
+        // the trees are read first, under the index's lock since the game can cut one down while a save runs
+        int[][] treeIds = new int[chunks.size()][];
+        Long[] cut = generator.cutTrees.toArray(new Long[0]); // the game can cut more meanwhile, those are in the next save
+        long size = HEADER_BYTES + (long) chunks.size() * TABLE_ENTRY_BYTES + (long) cut.length * CUT_TREE_BYTES;
+        int index = 0;
+        for (Chunk chunk : chunks){
+            int[] ids = new int[Chunk.SIZE * Chunk.SIZE];
+            int trees;
+            synchronized (chunk.trees){
+                trees = chunk.trees.queryRect(0, 0, Chunk.SIZE - 1, Chunk.SIZE - 1, ids);
+            }
+            treeIds[index++] = Arrays.copyOf(ids, trees);
+            size += recordBytes(trees);
+        }
+        if (size > Integer.MAX_VALUE){
+            throw new IOException("too many chunks to save, " + size + " bytes");
+        }
+
+        // written through a heap buffer rather than a mapping, a file that is still mapped can't be moved on Windows
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+        out.putInt(MAGIC).putInt(VERSION).putInt(generator.seed).putInt(generator.mapSize);
+        out.putInt(generator.useFalloffMap ? 1 : 0).putInt(Chunk.SIZE).putInt(chunks.size()).putInt(cut.length);
+
+        ByteBuffer cutOut = out.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(HEADER_BYTES + chunks.size() * TABLE_ENTRY_BYTES);
+        for (long tree : cut){
+            cutOut.putInt((int) (tree >> 32)).putInt((int) tree);
+        }
+
+        int record = HEADER_BYTES + chunks.size() * TABLE_ENTRY_BYTES + cut.length * CUT_TREE_BYTES;
+        index = 0;
+        for (Chunk chunk : chunks){
+            int[] ids = treeIds[index++];
+            out.putInt(chunk.chunkX).putInt(chunk.chunkY).putLong(record);
+
+            ByteBuffer body = out.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(record);
+            FloatGrid heights = chunk.heightMap;
+            FloatGrid moistures = chunk.moistureMap;
+            for (int i = 0; i < Chunk.SIZE * Chunk.SIZE; i++){
+                body.putFloat(heights.get(i));
+            }
+            for (int i = 0; i < Chunk.SIZE * Chunk.SIZE; i++){
+                body.putFloat(moistures.get(i));
+            }
+            body.put(chunk.tiles);
+
+            body.putInt(ids.length);
+            for (int id : ids){
+                body.put((byte) chunk.trees.getX(id)).put((byte) chunk.trees.getY(id)).put(chunk.trees.getType(id)); // removing a tree leaves these as they are
+            }
+
+            record += recordBytes(ids.length);
+        }
+        out.clear();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            while (out.hasRemaining()){
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+
+        try {
+            move(temporary, path);
+        } catch (FileSystemException e){
+            // on Windows a mapping of the old file that nothing uses any more is only let go of once it is collected
+            System.gc();
+            move(temporary, path);
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e){
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // a record is padded to a multiple of 4 so the float grids of the next one stay aligned
+    private static int recordBytes(int trees){
+        int bytes = 2 * GRID_BYTES + Chunk.SIZE * Chunk.SIZE + Integer.BYTES + trees * 3;
+        return (bytes + 3) & ~3;
+    }
+
+    public boolean hasChunk(int chunkX, int chunkY){
+        return offsets.containsKey(key(chunkX, chunkY));
+    }
+
+    /**
+     * The saved chunk, or null if it wasn't saved. Its heights and moistures are read only views into the file,
+     * the tile ids and trees are copied out since they can change during the game.
+     */
+    public Chunk readChunk(int chunkX, int chunkY){
+        Integer offset = offsets.get(key(chunkX, chunkY));
+        if (offset == null){
+            return null;
+        }
+
+        FloatGrid heightMap = FloatGrid.wrap(Chunk.SIZE, Chunk.SIZE, file.slice(offset, GRID_BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+        FloatGrid moistureMap = FloatGrid.wrap(Chunk.SIZE, Chunk.SIZE, file.slice(offset + GRID_BYTES, GRID_BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+
+        byte[] tiles = new byte[Chunk.SIZE * Chunk.SIZE];
+        file.get(offset + 2 * GRID_BYTES, tiles);
+
+        int treeOffset = offset + 2 * GRID_BYTES + tiles.length;
+        int treeCount = file.getInt(treeOffset);
+        TreeIndex trees = new TreeIndex(Chunk.SIZE, Chunk.SIZE, MapGenerator.TREE_CELL_SIZE);
+        for (int i = 0; i < treeCount; i++){
+            int tree = treeOffset + Integer.BYTES + i * 3;
+            trees.add(file.get(tree), file.get(tree + 1), file.get(tree + 2));
+        }
+
+        return new Chunk(chunkX, chunkY, heightMap, moistureMap, tiles, trees);
+    }
+
+    public int getChunkCount(){
+        return offsets.size();
+    }
+
+    private static long key(int chunkX, int chunkY){
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+}
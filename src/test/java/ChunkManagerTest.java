@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkManagerTest {
+    @TempDir
+    Path folder;
+
+    // every chunk is counted as what it holds now, after all the bakes it got as its neighbours arrived
+    @Test
+    public void cachedBytesAddUp() throws InterruptedException {
+        ChunkManager world = new ChunkManager(new MapGenerator(8, 2000, false), 2L << 20, new TerrainBaker(false, true, true));
+        int span = 5 * Chunk.SIZE - 1;
+        world.prefetch(0, 0, span, 0, 0);
+        while (true){
+            synchronized (world){
+                if (world.pending.isEmpty()){
+                    break;
+                }
+            }
+            Thread.sleep(10);
+        }
+        world.workers.shutdown(); // lets the last rebakes finish
+        assertTrue(world.workers.awaitTermination(30, TimeUnit.SECONDS));
+
+        synchronized (world){
+            long bytes = 0;
+            for (Chunk chunk : world.chunks.values()){
+                assertEquals(chunk.getHeapBytes(), chunk.cachedBytes, "chunk " + chunk.chunkX + ", " + chunk.chunkY);
+                bytes += chunk.cachedBytes;
+            }
+            assertEquals(bytes, world.cachedBytes);
+            assertTrue(world.cachedBytes <= world.maxBytes);
+            assertTrue(world.evictions > 0, "the budget is meant to be too small for every chunk");
+        }
+    }
+
+    @Test
+    public void cutTreesStayCut() throws IOException, InterruptedException {
+        MapGenerator generator = new MapGenerator(3, 2000, false);
+        ChunkManager world = new ChunkManager(generator, 64L << 20, new TerrainBaker(true, true, true));
+        int span = 3 * Chunk.SIZE - 1;
+        world.prefetch(0, 0, span, 0, 0);
+        while (!world.isLoaded(0, 0, span)){
+            Thread.sleep(10);
+        }
+
+        // a tree of the middle chunk, one that reaches into the next chunk if there is one
+        int[] treesX = new int[64];
+        int[] treesY = new int[64];
+        int count = world.findTrees(Chunk.SIZE + 32, Chunk.SIZE + 32, 32, treesX, treesY);
+        assertTrue(count > 0, "no trees to cut");
+        int x = treesX[0];
+        int y = treesY[0];
+        for (int i = 0; i < count; i++){
+            if (Math.floorMod(treesX[i] + 1, Chunk.SIZE) <= 1 || Math.floorMod(treesY[i] + 1, Chunk.SIZE) <= 1){
+                x = treesX[i];
+                y = treesY[i];
+            }
+        }
+        Chunk chunk = world.getLoadedChunk(1, 1);
+        BakedChunk baked = chunk.baked;
+
+        assertTrue(world.removeTree(x, y));
+        assertFalse(world.removeTree(x, y), "cut twice");
+        assertEquals(count - 1, world.findTrees(Chunk.SIZE + 32, Chunk.SIZE + 32, 32, treesX, treesY));
+
+        int[][] parts = {{0, 0}, {-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        for (int[] part : parts){
+            int tileX = x + part[0];
+            int tileY = y + part[1];
+            assertEquals(generator.getBiome(tileX, tileY), world.getTile(tileX, tileY), "tile " + tileX + ", " + tileY);
+        }
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (chunk.baked == baked && System.nanoTime() < deadline){
+            Thread.sleep(10);
+        }
+        assertNotSame(baked, chunk.baked, "not baked again");
+
+        // made again after an eviction, neither its own chunk nor the ones around grow it back
+        for (int[] part : parts){
+            int tileX = x + part[0];
+            int tileY = y + part[1];
+            Chunk again = generator.generateChunk(Math.floorDiv(tileX, Chunk.SIZE), Math.floorDiv(tileY, Chunk.SIZE));
+            assertEquals(generator.getBiome(tileX, tileY), again.getTile(Math.floorMod(tileX, Chunk.SIZE), Math.floorMod(tileY, Chunk.SIZE)), "tile " + tileX + ", " + tileY + " made again");
+        }
+        assertEquals(-1, generator.generateChunk(1, 1).trees.find(x - Chunk.SIZE, y - Chunk.SIZE));
+
+        // and a world loaded from a save knows about it
+        Path path = folder.resolve("world.dat");
+        world.save(path);
+        MapGenerator loaded = new MapGenerator(3, 2000, false);
+        new ChunkManager(loaded, 8L << 20, new TerrainBaker(false, false, false), WorldFile.open(path));
+        assertTrue(loaded.cutTrees.contains(MapGenerator.treeKey(x, y)));
+    }
+}
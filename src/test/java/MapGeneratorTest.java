@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MapGeneratorTest {
+    @Test
+    public void treesAreWholeAcrossChunkBorders(){
+        int crossing = 0; // trees with a part in another chunk than their point
+        for (int seed : new int[]{3, 77, -512}){
+            MapGenerator generator = new MapGenerator(seed, 2000, false);
+
+            // 4 x 4 chunks, the trees of the middle 2 x 2 are checked so every part of them lands in a generated chunk
+            Chunk[] chunks = new Chunk[16];
+            for (int i = 0; i < chunks.length; i++){
+                chunks[i] = generator.generateChunk(i % 4 - 2, i / 4 - 2);
+            }
+
+            for (int chunk = 0; chunk < chunks.length; chunk++){
+                if (chunk % 4 == 0 || chunk % 4 == 3 || chunk / 4 == 0 || chunk / 4 == 3){
+                    continue;
+                }
+                TreeIndex trees = chunks[chunk].trees;
+                int[] ids = new int[Chunk.SIZE * Chunk.SIZE];
+                int count = trees.queryRect(0, 0, Chunk.SIZE - 1, Chunk.SIZE - 1, ids);
+
+                for (int i = 0; i < count; i++){
+                    int x = (chunk % 4) * Chunk.SIZE + trees.getX(ids[i]);
+                    int y = (chunk / 4) * Chunk.SIZE + trees.getY(ids[i]);
+                    byte type = trees.getType(ids[i]);
+
+                    assertEquals(Tiles.treeCenter(type), tile(chunks, x, y), "seed " + seed + " tree at " + x + ", " + y);
+                    assertEquals(type, tile(chunks, x - 1, y));
+                    assertEquals(type, tile(chunks, x + 1, y));
+                    assertEquals(type, tile(chunks, x, y - 1));
+                    assertEquals(Tiles.TREE_TRUNK, tile(chunks, x, y + 1));
+
+                    if (Math.floorMod(x + 1, Chunk.SIZE) <= 1 || Math.floorMod(y + 1, Chunk.SIZE) <= 1){
+                        crossing++;
+                    }
+                }
+            }
+        }
+        assertTrue(crossing > 0, "no tree on a chunk border to check");
+    }
+
+    @Test
+    public void getBiomeIsTheChunksBiome(){
+        MapGenerator generator = new MapGenerator(3, 2000, false);
+        int checked = 0;
+        for (int chunkY = -1; chunkY <= 1; chunkY++){
+            for (int chunkX = -1; chunkX <= 1; chunkX++){
+                Chunk chunk = generator.generateChunk(chunkX, chunkY);
+                for (int y = 0; y < Chunk.SIZE; y++){
+                    for (int x = 0; x < Chunk.SIZE; x++){
+                        byte tile = chunk.getTile(x, y);
+                        if (tile >= Tiles.PALM_TREE && tile <= Tiles.TREE_MARKER){
+                            continue; // a tree grows there, the biome under it is gone
+                        }
+                        int worldX = chunkX * Chunk.SIZE + x;
+                        int worldY = chunkY * Chunk.SIZE + y;
+                        assertEquals(tile, generator.getBiome(worldX, worldY), "tile " + worldX + ", " + worldY);
+                        checked++;
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    // x and y are in tiles of the 4 x 4 chunks
+    private static byte tile(Chunk[] chunks, int x, int y){
+        return chunks[(y / Chunk.SIZE) * 4 + x / Chunk.SIZE].getTile(x % Chunk.SIZE, y % Chunk.SIZE);
+    }
+}
@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OpenSimplex2Test {
+    static final long[] SEEDS = {0, 1, -1, 1234567890123L, Long.MIN_VALUE, Long.MAX_VALUE};
+    static final double[] STARTS = {0, 0.5, -0.5, 123.456, -987.654, -1e6, 1e6 + 0.25};
+    static final double[] STEPS = {1, 0.01, 1 / 3d, 0.0053, -0.7, 2.5};
+
+    @Test
+    public void rowIsExactlyNoise2(){
+        float[] out = new float[3 + 300]; // longer than one block of the row, and not from the start of out
+        for (long seed : SEEDS){
+            for (double x0 : STARTS){
+                for (double y : STARTS){
+                    for (double dx : STEPS){
+                        OpenSimplex2.noise2Row(seed, x0, dx, y, out, 3, 300);
+                        for (int i = 0; i < 300; i++){
+                            assertBitsEqual(OpenSimplex2.noise2(seed, x0 + i * dx, y), out[3 + i], seed, x0 + i * dx, y);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tileIsExactlyNoise2(){
+        int width = 37;
+        int height = 23;
+        float[] out = new float[5 + width * height];
+        for (long seed : SEEDS){
+            for (double x0 : STARTS){
+                for (double y0 : STARTS){
+                    for (double step : STEPS){
+                        double dy = step * 0.75;
+                        OpenSimplex2.noise2Tile(seed, x0, step, y0, dy, width, height, out, 5);
+                        for (int j = 0; j < height; j++){
+                            for (int i = 0; i < width; i++){
+                                double x = x0 + i * step;
+                                double y = y0 + j * dy;
+                                assertBitsEqual(OpenSimplex2.noise2(seed, x, y), out[5 + j * width + i], seed, x, y);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertBitsEqual(float expected, float actual, long seed, double x, double y){
+        assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(actual), () -> "seed " + seed + " at (" + x + ", " + y + ")");
+    }
+}
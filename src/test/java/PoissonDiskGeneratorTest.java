@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoissonDiskGeneratorTest {
+    @Test
+    public void noTwoPointsTooClose(){
+        for (double minDistance : new double[]{3, 5, 10}){
+            PoissonDiskGenerator points = new PoissonDiskGenerator(minDistance, 300, 42);
+            int[] cells = filled(points);
+            assertTrue(cells.length > 300 * 300 / (minDistance * minDistance * 4), "only " + cells.length + " points at " + minDistance);
+
+            for (int i = 0; i < cells.length; i++){
+                double x = points.pointX[cells[i]];
+                double y = points.pointY[cells[i]];
+                assertTrue(x >= 0 && y >= 0 && x < 300 && y < 300);
+                for (int j = i + 1; j < cells.length; j++){
+                    double dx = points.pointX[cells[j]] - x;
+                    double dy = points.pointY[cells[j]] - y;
+                    assertTrue(dx * dx + dy * dy >= minDistance * minDistance, "points " + cells[i] + " and " + cells[j] + " at " + minDistance);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedSamePoints(){
+        PoissonDiskGenerator first = new PoissonDiskGenerator(5, 200, 7);
+        PoissonDiskGenerator second = new PoissonDiskGenerator(5, 200, 7);
+        assertArrayEquals(first.pointX, second.pointX);
+        assertArrayEquals(first.pointY, second.pointY);
+        assertNotEquals(first.getCount(), 0);
+    }
+
+    // the cells that have a point
+    private static int[] filled(PoissonDiskGenerator points){
+        int[] cells = new int[points.getCount()];
+        int count = 0;
+        for (int cell = 0; cell < points.getCellCount(); cell++){
+            if (points.hasPoint(cell)){
+                cells[count++] = cell;
+            }
+        }
+        assertEquals(points.getCount(), count);
+        return cells;
+    }
+}
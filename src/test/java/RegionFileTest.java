@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegionFileTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    public void chunksComeBackAsTheyWereSaved() throws IOException {
+        MapGenerator generator = new MapGenerator(1234, 2000, false);
+        List<Chunk> chunks = new ArrayList<>();
+        for (int chunkY = -1; chunkY <= 0; chunkY++){
+            for (int chunkX = -2; chunkX <= 1; chunkX++){ // four regions, two of them at negative coordinates
+                chunks.add(generator.generateChunk(chunkX, chunkY));
+            }
+        }
+        RegionFile.save(folder, chunks);
+
+        for (Chunk chunk : chunks){
+            int regionX = Math.floorDiv(chunk.chunkX, RegionFile.REGION_SIZE);
+            int regionY = Math.floorDiv(chunk.chunkY, RegionFile.REGION_SIZE);
+            try (RegionFile region = RegionFile.open(RegionFile.fileFor(folder, regionX, regionY))){
+                assertEquals(regionX, region.regionX);
+                assertEquals(regionY, region.regionY);
+
+                Chunk read = region.readChunk(chunk.chunkX, chunk.chunkY);
+                assertNotNull(read, "chunk " + chunk.chunkX + ", " + chunk.chunkY);
+                for (int i = 0; i < Chunk.SIZE * Chunk.SIZE; i++){
+                    assertEquals(chunk.heightMap.get(i), read.heightMap.get(i), 1 / 65535d, "height " + i);
+                    assertEquals(chunk.moistureMap.get(i), read.moistureMap.get(i), 1 / 65535d, "moisture " + i);
+                }
+                assertArrayEquals(chunk.tiles, read.tiles);
+                assertArrayEquals(WorldFileTest.treePoints(chunk.trees), WorldFileTest.treePoints(read.trees));
+
+                // chunks of the region that weren't saved, and chunks of other regions, aren't in it
+                assertFalse(region.hasChunk(chunk.chunkX, chunk.chunkY + 2));
+                assertNull(region.readChunk(chunk.chunkX, chunk.chunkY + 2));
+                assertNull(region.readChunk(chunk.chunkX + RegionFile.REGION_SIZE, chunk.chunkY));
+            }
+        }
+    }
+
+    // a file of the right size with the wrong magic, and one too short to hold the table
+    @Test
+    public void notARegionFile() throws IOException {
+        Path path = folder.resolve("r.0.0.rdr");
+        Files.write(path, new byte[RegionFile.HEADER_BYTES + RegionFile.TABLE_BYTES]);
+        assertThrows(IOException.class, () -> RegionFile.open(path));
+
+        Files.write(path, new byte[10]);
+        assertThrows(IOException.class, () -> RegionFile.open(path));
+    }
+}
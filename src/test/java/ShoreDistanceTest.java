@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ShoreDistanceTest {
+    @Test
+    public void sameAsCheckingEveryTile(){
+        SplittableRandom random = new SplittableRandom(11);
+        byte[] kinds = {Tiles.OCEAN, Tiles.DEEP_OCEAN, Tiles.GRASSLANDS, Tiles.BEACH, Tiles.PLACEHOLDER};
+
+        for (int map = 0; map < 200; map++){
+            int width = random.nextInt(1, 30);
+            int height = random.nextInt(1, 30);
+            double water = random.nextDouble(); // from all land to all water, so some maps have tiles MAX or more from the shore
+            double placeholders = random.nextDouble(0.2);
+
+            byte[] tiles = new byte[width * height];
+            for (int i = 0; i < tiles.length; i++){
+                double roll = random.nextDouble();
+                tiles[i] = roll < placeholders ? Tiles.PLACEHOLDER : roll < placeholders + water * (1 - placeholders) ? kinds[random.nextInt(2)] : kinds[2 + random.nextInt(2)];
+            }
+
+            byte[] distances = ShoreDistance.compute(tiles, width, height);
+            for (int y = 0; y < height; y++){
+                for (int x = 0; x < width; x++){
+                    assertEquals(bruteForce(tiles, width, height, x, y), distances[y * width + x], "map " + map + " (" + width + " x " + height + ") tile " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    // the distance to the nearest tile of the other kind, found by looking at every tile
+    private static byte bruteForce(byte[] tiles, int width, int height, int x, int y){
+        byte tile = tiles[y * width + x];
+        if (tile == Tiles.PLACEHOLDER){
+            return 0;
+        }
+
+        long nearest = Long.MAX_VALUE;
+        for (int otherY = 0; otherY < height; otherY++){
+            for (int otherX = 0; otherX < width; otherX++){
+                byte other = tiles[otherY * width + otherX];
+                if (other != Tiles.PLACEHOLDER && ShoreDistance.isWater(other) != ShoreDistance.isWater(tile)){
+                    nearest = Math.min(nearest, (long) (otherX - x) * (otherX - x) + (long) (otherY - y) * (otherY - y));
+                }
+            }
+        }
+
+        int distance = nearest >= ShoreDistance.MAX * ShoreDistance.MAX ? ShoreDistance.MAX : Math.max(1, (int) Math.round(Math.sqrt(nearest)));
+        return (byte) (ShoreDistance.isWater(tile) ? -distance : distance);
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TreeIndexTest {
+    static final int SIZE = 100;
+
+    @Test
+    public void queriesFindWhatAScanFinds(){
+        SplittableRandom random = new SplittableRandom(5);
+        TreeIndex index = new TreeIndex(SIZE, SIZE, 16);
+        int[] xs = new int[300];
+        int[] ys = new int[300];
+        boolean[] removed = new boolean[300];
+        for (int i = 0; i < xs.length; i++){
+            xs[i] = random.nextInt(SIZE);
+            ys[i] = random.nextInt(SIZE);
+            assertEquals(i, index.add(xs[i], ys[i], Tiles.NORMAL_TREE));
+        }
+        for (int i = 0; i < xs.length; i += 3){
+            assertTrue(index.remove(i));
+            assertFalse(index.remove(i), "tree " + i + " removed twice");
+            removed[i] = true;
+        }
+        assertEquals(200, index.getCount());
+
+        int[] out = new int[xs.length];
+        for (int query = 0; query < 200; query++){
+            int minX = random.nextInt(-10, SIZE);
+            int minY = random.nextInt(-10, SIZE);
+            int maxX = minX + random.nextInt(40);
+            int maxY = minY + random.nextInt(40);
+
+            int count = index.queryRect(minX, minY, maxX, maxY, out);
+            int[] expected = scan(xs, ys, removed, id -> xs[id] >= minX && xs[id] <= maxX && ys[id] >= minY && ys[id] <= maxY);
+            assertArrayEquals(expected, sorted(out, count), "rect " + minX + ", " + minY + " to " + maxX + ", " + maxY);
+
+            double x = random.nextDouble(SIZE);
+            double y = random.nextDouble(SIZE);
+            double radius = random.nextDouble(30);
+            count = index.queryRadius(x, y, radius, out);
+            expected = scan(xs, ys, removed, id -> (xs[id] - x) * (xs[id] - x) + (ys[id] - y) * (ys[id] - y) <= radius * radius);
+            assertArrayEquals(expected, sorted(out, count), "radius " + radius + " around " + x + ", " + y);
+        }
+    }
+
+    @Test
+    public void findAndRemove(){
+        TreeIndex index = new TreeIndex(SIZE, SIZE, 16);
+        int first = index.add(20, 30, Tiles.PALM_TREE);
+        int second = index.add(21, 30, Tiles.PINE_TREE); // same cell
+        int third = index.add(90, 5, Tiles.NORMAL_TREE);
+
+        assertEquals(second, index.find(21, 30));
+        assertEquals(-1, index.find(22, 30));
+        assertEquals(-1, index.find(-1, 30));
+
+        assertTrue(index.remove(second));
+        assertEquals(-1, index.find(21, 30));
+        assertEquals(first, index.find(20, 30));
+        assertEquals(third, index.find(90, 5));
+        assertEquals(Tiles.PALM_TREE, index.getType(first));
+
+        int[] out = new int[4];
+        assertEquals(1, index.queryRect(0, 0, 50, 50, out));
+        assertEquals(first, out[0]);
+        assertEquals(1, index.queryRect(0, 0, SIZE, SIZE, new int[1]), "stops once out is full");
+    }
+
+    // the ids of the trees that are still there and match, in id order
+    private static int[] scan(int[] xs, int[] ys, boolean[] removed, IntPredicate match){
+        return IntStream.range(0, xs.length).filter(id -> !removed[id] && match.test(id)).toArray();
+    }
+
+    private static int[] sorted(int[] ids, int count){
+        int[] copy = Arrays.copyOf(ids, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+}
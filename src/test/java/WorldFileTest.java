@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldFileTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    public void chunksComeBackAsTheyWereSaved() throws IOException {
+        MapGenerator generator = new MapGenerator(1234, 2000, true);
+        List<Chunk> chunks = new ArrayList<>();
+        for (int chunkY = -1; chunkY <= 1; chunkY++){
+            for (int chunkX = -1; chunkX <= 2; chunkX++){
+                chunks.add(generator.generateChunk(chunkX, chunkY));
+            }
+        }
+
+        Path path = folder.resolve("world.dat");
+        WorldFile.save(path, generator, chunks);
+        WorldFile saved = WorldFile.open(path);
+
+        assertEquals(generator.seed, saved.seed);
+        assertEquals(generator.mapSize, saved.mapSize);
+        assertEquals(generator.useFalloffMap, saved.useFalloffMap);
+        assertEquals(chunks.size(), saved.getChunkCount());
+        assertFalse(saved.hasChunk(3, 0));
+        assertNull(saved.readChunk(3, 0));
+
+        for (Chunk chunk : chunks){
+            Chunk read = saved.readChunk(chunk.chunkX, chunk.chunkY);
+            assertNotNull(read, "chunk " + chunk.chunkX + ", " + chunk.chunkY);
+
+            for (int i = 0; i < Chunk.SIZE * Chunk.SIZE; i++){
+                // compared as bits so a NaN or a -0 would have to come back the same too
+                assertEquals(Float.floatToRawIntBits(chunk.heightMap.get(i)), Float.floatToRawIntBits(read.heightMap.get(i)), "height " + i);
+                assertEquals(Float.floatToRawIntBits(chunk.moistureMap.get(i)), Float.floatToRawIntBits(read.moistureMap.get(i)), "moisture " + i);
+            }
+            assertArrayEquals(chunk.tiles, read.tiles);
+            assertArrayEquals(treePoints(chunk.trees), treePoints(read.trees));
+        }
+    }
+
+    @Test
+    public void savingOverTheWorldItWasLoadedFrom() throws IOException, InterruptedException {
+        MapGenerator generator = new MapGenerator(99, 500, false);
+        Path path = folder.resolve("world.dat");
+        WorldFile.save(path, generator, List.of(generator.generateChunk(0, 0), generator.generateChunk(5, 5)));
+
+        ChunkManager world = new ChunkManager(generator, 8L << 20, new TerrainBaker(false, false, false), WorldFile.open(path));
+        world.prefetch(0, 0, Chunk.SIZE, 0, 0);
+        while (!world.isLoaded(0, 0, Chunk.SIZE)){
+            Thread.sleep(10);
+        }
+        Chunk loaded = world.getLoadedChunk(0, 0);
+        float height = loaded.heightMap.get(10, 20);
+
+        world.save(path);
+
+        // the loaded chunk no longer reads from the file that was replaced, and chunks come from the new one
+        assertFalse(loaded.heightMap.isOffHeap());
+        assertEquals(height, loaded.heightMap.get(10, 20));
+        assertEquals(5, world.saved.getChunkCount()); // the 2 x 2 chunks under the view, and (5, 5) which was never loaded but is carried over from the old file
+        assertTrue(WorldFile.open(path).hasChunk(5, 5));
+    }
+
+    // every tree as x, y and type packed into an int, sorted since the index doesn't keep the order they were added in
+    static int[] treePoints(TreeIndex trees){
+        int[] ids = new int[Chunk.SIZE * Chunk.SIZE];
+        int count = trees.queryRect(0, 0, Chunk.SIZE - 1, Chunk.SIZE - 1, ids);
+
+        int[] points = new int[count];
+        for (int i = 0; i < count; i++){
+            points[i] = trees.getX(ids[i]) << 16 | trees.getY(ids[i]) << 8 | trees.getType(ids[i]) & 0xFF;
+        }
+        Arrays.sort(points);
+        return points;
+    }
+}